@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.graphics.PointF;
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+
+/**
+ * Face detector which decides, frame by frame, whether the underlying detector needs to run at
+ * all.  Frames for which detection is skipped are answered with the results of the last detection
+ * (the same {@link Face} instances), which the overlay bridges by extrapolating the faces.<p>
+ *
+ * The detection interval is chosen from:
+ * <ul>
+ * <li>the CPU budget: the measured detection latency divided by the budget is the shortest
+ * interval that keeps the detector within its share of the CPU,</li>
+ * <li>the scene activity: with no faces, detection only runs often enough to notice newcomers;
+ * with faces, the interval shrinks as the faces move faster, relative to their size.</li>
+ * </ul>
+ * Intervals and face speeds are measured on the frame timestamps, so that a replayed recording
+ * is detected on the same frames however fast it is replayed; only the detection latency is
+ * measured on the wall clock.
+ */
+class AdaptiveFaceDetector extends Detector<Face> {
+    /**
+     * Default fraction of one CPU core which detection may use.
+     */
+    static final float DEFAULT_CPU_BUDGET = 0.5f;
+
+    // 顔がないときの検出間隔（新しく現れた顔に気づくための間隔）
+    static final long DEFAULT_IDLE_INTERVAL_MILLIS = 300;
+    // 顔が静止しているときの検出間隔
+    static final long DEFAULT_STILL_INTERVAL_MILLIS = 150;
+
+    // この速さ（1秒あたり顔の幅の何倍動くか）以上では、毎フレーム検出する
+    private static final float FAST_MOTION = 1.0f;
+    private static final float SMOOTHING = 0.2f;
+
+    private final Detector<Face> mDelegate;
+
+    private volatile float mCpuBudget = DEFAULT_CPU_BUDGET;
+    private volatile long mIdleIntervalMillis = DEFAULT_IDLE_INTERVAL_MILLIS;
+    private volatile long mStillIntervalMillis = DEFAULT_STILL_INTERVAL_MILLIS;
+    private volatile long mMinIntervalMillis;
+
+    // 以下は検出スレッドからのみ更新される
+    private SparseArray<Face> mLastResults = new SparseArray<>();
+    private long mLastDetectionMillis = -1;
+    private volatile float mLatencyMillis;
+    private volatile float mMotion;
+    private volatile long mIntervalMillis;
+    private volatile long mDetectedFrames;
+    private volatile long mSkippedFrames;
+
+    AdaptiveFaceDetector(Detector<Face> delegate) {
+        mDelegate = delegate;
+    }
+
+    /**
+     * Sets the fraction of one CPU core, between 0 and 1, which detection may use on average.
+     */
+    void setCpuBudget(float cpuBudget) {
+        mCpuBudget = Math.max(0.01f, Math.min(cpuBudget, 1.0f));
+    }
+
+    /**
+     * Sets the detection intervals used when no faces are present and when all faces are still.
+     */
+    void setIntervals(long idleIntervalMillis, long stillIntervalMillis) {
+        mIdleIntervalMillis = idleIntervalMillis;
+        mStillIntervalMillis = stillIntervalMillis;
+    }
+
+    /**
+     * Sets the shortest time between two detections, regardless of budget and activity, i.e.,
+     * caps the detection rate.  0 means no cap.
+     */
+    void setMinIntervalMillis(long minIntervalMillis) {
+        mMinIntervalMillis = minIntervalMillis;
+    }
+
+    @Override
+    public SparseArray<Face> detect(Frame frame) {
+        // 間隔と動きはフレームの時刻で測るので、記録の再生でも再生速度によらず同じフレームを検出する
+        long now = frame.getMetadata().getTimestampMillis();
+        if (now < mLastDetectionMillis) {
+            // 時刻が戻った（別の記録の再生などが始まった）
+            mLastDetectionMillis = -1;
+        }
+        if (mLastDetectionMillis >= 0 && now - mLastDetectionMillis < mIntervalMillis) {
+            mSkippedFrames++;
+            return mLastResults;
+        }
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        SparseArray<Face> results = mDelegate.detect(frame);
+        float latencyMillis = (SystemClock.elapsedRealtimeNanos() - start) / 1000000.0f;
+
+        if (mLastDetectionMillis >= 0) {
+            float dt = (now - mLastDetectionMillis) / 1000.0f;
+            mMotion += SMOOTHING * (measureMotion(mLastResults, results, dt) - mMotion);
+            mLatencyMillis += SMOOTHING * (latencyMillis - mLatencyMillis);
+        } else {
+            mLatencyMillis = latencyMillis;
+        }
+        mLastResults = results;
+        mLastDetectionMillis = now;
+        mDetectedFrames++;
+        mIntervalMillis = chooseInterval(results.size());
+        return results;
+    }
+
+    @Override
+    public boolean isOperational() {
+        return mDelegate.isOperational();
+    }
+
+    @Override
+    public boolean setFocus(int id) {
+        return mDelegate.setFocus(id);
+    }
+
+    @Override
+    public void release() {
+        mDelegate.release();
+        super.release();
+    }
+
+    long getDetectedFrames() {
+        return mDetectedFrames;
+    }
+
+    long getSkippedFrames() {
+        return mSkippedFrames;
+    }
+
+    /**
+     * Running average of the time spent in the underlying detector per detection.
+     */
+    float getLatencyMillis() {
+        return mLatencyMillis;
+    }
+
+    /**
+     * Running average of face speed, in face widths per second.
+     */
+    float getMotion() {
+        return mMotion;
+    }
+
+    /**
+     * The current minimum time between two detections.
+     */
+    long getIntervalMillis() {
+        return mIntervalMillis;
+    }
+
+    private long chooseInterval(int faceCount) {
+        long budgetInterval = (long) (mLatencyMillis / mCpuBudget);
+
+        long activityInterval;
+        if (faceCount == 0) {
+            activityInterval = mIdleIntervalMillis;
+        } else {
+            // 動きが速いほど間隔を短くする
+            float stillness = 1.0f - Math.min(mMotion / FAST_MOTION, 1.0f);
+            activityInterval = (long) (mStillIntervalMillis * stillness);
+        }
+        return Math.max(Math.max(budgetInterval, activityInterval), mMinIntervalMillis);
+    }
+
+    /**
+     * Returns the average speed of the faces present in both results, in face widths per second.
+     */
+    private static float measureMotion(SparseArray<Face> previous, SparseArray<Face> current,
+                                       float dt) {
+        if (dt <= 0.0f) {
+            return 0.0f;
+        }
+        float total = 0.0f;
+        int count = 0;
+        for (int i = 0, size = current.size(); i < size; i++) {
+            Face before = previous.get(current.keyAt(i));
+            if (before == null) {
+                continue;
+            }
+            Face after = current.valueAt(i);
+            PointF p0 = before.getPosition();
+            PointF p1 = after.getPosition();
+            float width = Math.max(after.getWidth(), 1.0f);
+            float dx = (p1.x + after.getWidth() / 2) - (p0.x + before.getWidth() / 2);
+            float dy = (p1.y + after.getHeight() / 2) - (p0.y + before.getHeight() / 2);
+            total += (float) Math.sqrt(dx * dx + dy * dy) / width / dt;
+            count++;
+        }
+        return (count == 0) ? 0.0f : total / count;
+    }
+}
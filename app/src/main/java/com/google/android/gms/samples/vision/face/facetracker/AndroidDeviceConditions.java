@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.DeviceConditions;
+
+/**
+ * Device conditions read from the sticky battery status broadcast.  The thermal status API is
+ * not available at this app's compile SDK, so the battery temperature, which rises with sustained
+ * load, stands in for the device temperature.
+ */
+final class AndroidDeviceConditions implements DeviceConditions {
+    private final Context mContext;
+
+    AndroidDeviceConditions(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    @Override
+    public float getTemperatureCelsius() {
+        Intent status = getBatteryStatus();
+        if (status == null) {
+            return Float.NaN;
+        }
+        // 0.1 度単位で報告される
+        int temperature = status.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, Integer.MIN_VALUE);
+        return (temperature == Integer.MIN_VALUE) ? Float.NaN : temperature / 10.0f;
+    }
+
+    @Override
+    public float getBatteryLevel() {
+        Intent status = getBatteryStatus();
+        if (status == null) {
+            return -1.0f;
+        }
+        int level = status.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = status.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        return (level < 0 || scale <= 0) ? -1.0f : (float) level / scale;
+    }
+
+    @Override
+    public boolean isCharging() {
+        Intent status = getBatteryStatus();
+        return status != null && status.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+    }
+
+    private Intent getBatteryStatus() {
+        // sticky ブロードキャストなので、レシーバーを登録せずに最新の状態を受け取れる
+        return mContext.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+    }
+}
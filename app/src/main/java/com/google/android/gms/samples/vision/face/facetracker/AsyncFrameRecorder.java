@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.util.Log;
+
+import com.google.android.gms.vision.Frame;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Records frames through a {@link FrameFileWriter} on a dedicated writer thread, so that the
+ * thread delivering camera frames only copies each frame into a buffer and never waits for file
+ * I/O.<p>
+ *
+ * Copied frames queue up in a small, fixed set of buffers, which are swapped between the
+ * recording thread and the writer thread and reused, so recording does not allocate once the
+ * buffers have grown to the frame size.  If the writer falls behind so far that no buffer is
+ * free, the frame is not recorded and counted in {@link #getDroppedFrames()}.
+ */
+final class AsyncFrameRecorder implements Closeable {
+    private static final String TAG = "AsyncFrameRecorder";
+
+    static final int DEFAULT_BUFFER_COUNT = 4;
+
+    private final FrameFileWriter mWriter;
+    private final Thread mThread;
+
+    private final Object mLock = new Object();
+    // 書き込み待ちのフレームと、空いているフレーム（mLock で保護）
+    private final ArrayDeque<RecordedFrame> mQueued = new ArrayDeque<>();
+    private final ArrayDeque<RecordedFrame> mFree = new ArrayDeque<>();
+    private boolean mClosed;
+    private boolean mFailed;
+
+    private volatile long mRecordedFrames;
+    private volatile long mDroppedFrames;
+
+    /**
+     * Starts the writer thread.  The writer is closed with this recorder.
+     */
+    AsyncFrameRecorder(FrameFileWriter writer) {
+        this(writer, DEFAULT_BUFFER_COUNT);
+    }
+
+    AsyncFrameRecorder(FrameFileWriter writer, int bufferCount) {
+        mWriter = writer;
+        for (int i = 0; i < bufferCount; i++) {
+            mFree.add(new RecordedFrame());
+        }
+        mThread = new Thread(new WriterRunnable(), "FrameRecorder");
+        mThread.start();
+    }
+
+    /**
+     * Copies the remaining bytes of {@code data} and queues them to be written with the given
+     * metadata.  Returns without waiting for the write.  May be called from any thread, also
+     * after {@link #close()}, in which case the frame is ignored.
+     */
+    void record(Frame.Metadata metadata, ByteBuffer data) {
+        RecordedFrame frame;
+        synchronized (mLock) {
+            if (mClosed || mFailed) {
+                return;
+            }
+            frame = mFree.poll();
+        }
+        if (frame == null) {
+            mDroppedFrames++;
+            return;
+        }
+
+        // コピーはロックの外で行う（このバッファは書き込みスレッドに渡すまで、このスレッドだけが使う）
+        int size = data.remaining();
+        if (frame.mData.length < size) {
+            frame.mData = new byte[size];
+        }
+        data.duplicate().get(frame.mData, 0, size);
+        frame.mSize = size;
+        frame.mMetadata = metadata;
+
+        synchronized (mLock) {
+            mQueued.add(frame);
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Number of frames written to the file.
+     */
+    long getRecordedFrames() {
+        return mRecordedFrames;
+    }
+
+    /**
+     * Number of frames not recorded because the writer thread had fallen behind.
+     */
+    long getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    /**
+     * Writes the frames which are still queued, stops the writer thread and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (mLock) {
+            mClosed = true;
+            mLock.notifyAll();
+        }
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Log.d(TAG, "Interrupted while waiting for the recorder to finish.");
+            Thread.currentThread().interrupt();
+        }
+        mWriter.close();
+        Log.i(TAG, "Recorded " + mRecordedFrames + " frames, dropped " + mDroppedFrames + ".");
+    }
+
+    /**
+     * A copied frame waiting to be written.
+     */
+    private static final class RecordedFrame {
+        byte[] mData = new byte[0];
+        int mSize;
+        Frame.Metadata mMetadata;
+    }
+
+    /**
+     * Writes queued frames in order, until closed and drained.
+     */
+    private class WriterRunnable implements Runnable {
+        @Override
+        public void run() {
+            while (true) {
+                RecordedFrame frame;
+                synchronized (mLock) {
+                    while (mQueued.isEmpty() && !mClosed) {
+                        try {
+                            mLock.wait();
+                        } catch (InterruptedException e) {
+                            Log.d(TAG, "Frame recorder loop terminated.", e);
+                            return;
+                        }
+                    }
+                    frame = mQueued.poll();
+                    if (frame == null) {
+                        return;
+                    }
+                }
+
+                boolean written = false;
+                try {
+                    mWriter.write(frame.mMetadata, frame.mData, frame.mSize);
+                    written = true;
+                    mRecordedFrames++;
+                } catch (IOException e) {
+                    Log.e(TAG, "Could not record frame; recording stopped.", e);
+                }
+
+                synchronized (mLock) {
+                    frame.mMetadata = null;
+                    mFree.add(frame);
+                    if (!written) {
+                        mFailed = true;
+                        mQueued.clear();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,461 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.graphics.ImageFormat;
+import android.hardware.Camera;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.common.GoogleApiAvailability;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.FaceDetector;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Chooses the camera preview size and frame rate for this device model.  The supported preview
+ * sizes and frame rate ranges are enumerated, detection throughput is measured at candidate sizes
+ * in a short calibration, and the chosen configuration is persisted per device model, so that
+ * later launches start with it right away.<p>
+ *
+ * The capabilities are read through the legacy {@link Camera} API, which is the API that
+ * {@link com.google.android.gms.vision.CameraSource} itself uses to choose among them.  That
+ * requires opening the camera, and the throughput measurement needs the CPU to itself, so the
+ * calibration must run while the camera and detection pipeline are idle, i.e., before the camera
+ * source is started, and only once in the process at a time.  A configuration measured while
+ * detection was running elsewhere in the process is used, but not persisted.  Calibration detects
+ * on synthetic frames, so the measured throughput is a device-relative proxy rather than the rate
+ * achieved on real scenes.<p>
+ *
+ * A stored configuration is tied to the versions of this app and of Google Play services which
+ * measured it, and is calibrated again when either changes.
+ */
+final class CameraConfigNegotiator {
+    private static final String TAG = "CameraConfigNegotiator";
+    private static final String PREFERENCES_NAME = "camera_config";
+
+    /**
+     * Detection rate, in frames per second, which the chosen preview size must sustain.
+     */
+    static final float TARGET_DETECTION_FPS = 15.0f;
+    static final float MAX_FPS = 30.0f;
+
+    // 候補とするプレビューサイズの範囲と、計測の回数
+    private static final int MIN_CANDIDATE_WIDTH = 320;
+    private static final int MAX_CANDIDATE_WIDTH = 1920;
+    private static final int MAX_CANDIDATES = 5;
+    private static final int WARMUP_FRAME_COUNT = 3;
+    private static final int MEASURED_FRAME_COUNT = 20;
+
+    /**
+     * Immutable camera configuration.
+     */
+    static final class Config {
+        static final Config DEFAULT = new Config(640, 480, 30.0f);
+
+        final int mWidth;
+        final int mHeight;
+        final float mFps;
+
+        Config(int width, int height, float fps) {
+            mWidth = width;
+            mHeight = height;
+            mFps = fps;
+        }
+
+        @Override
+        public String toString() {
+            return mWidth + "x" + mHeight + " @ " + mFps + " fps";
+        }
+    }
+
+    /**
+     * Receives the outcome of a {@link Calibration}, on the UI thread.
+     */
+    interface Callback {
+        /**
+         * @param config the calibrated configuration, or null if none could be negotiated
+         */
+        void onCalibrated(Config config);
+    }
+
+    /**
+     * Tells whether other detection work is running in the process, which would skew the
+     * measured throughput.
+     */
+    interface WorkloadMonitor {
+        boolean isDetectionRunning();
+
+        /**
+         * Returns how many times detection has been started in the process.
+         */
+        int getDetectionStartCount();
+    }
+
+    /**
+     * Calibration running in the background, which any number of callers, e.g., the activities
+     * recreated while it runs, can wait for.  Callbacks are added and removed on the UI thread.
+     */
+    static final class Calibration {
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+        private final FutureTask<Config> mTask;
+        // UI スレッドからのみアクセスされる
+        private final List<Callback> mCallbacks = new ArrayList<>();
+
+        private Calibration(Callable<Config> calibration) {
+            mTask = new FutureTask<Config>(calibration) {
+                @Override
+                protected void done() {
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            deliver();
+                        }
+                    });
+                }
+            };
+        }
+
+        /**
+         * Calls {@code callback} with the result once the calibration is done, right away (but
+         * not synchronously) if it already is.
+         */
+        void addCallback(Callback callback) {
+            mCallbacks.add(callback);
+            if (mTask.isDone()) {
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver();
+                    }
+                });
+            }
+        }
+
+        /**
+         * Removes a callback which has not been called yet, e.g., when its activity is destroyed.
+         */
+        void removeCallback(Callback callback) {
+            mCallbacks.remove(callback);
+        }
+
+        private void deliver() {
+            if (mCallbacks.isEmpty()) {
+                return;
+            }
+            Config config;
+            try {
+                config = mTask.get();
+            } catch (InterruptedException | ExecutionException e) {
+                Log.e(TAG, "Calibration failed.", e);
+                config = null;
+            }
+            List<Callback> callbacks = new ArrayList<>(mCallbacks);
+            mCallbacks.clear();
+            for (Callback callback : callbacks) {
+                callback.onCalibrated(config);
+            }
+        }
+    }
+
+    private final Context mContext;
+    private final SharedPreferences mPreferences;
+    private final String mKey;
+    private final String mVersion;
+    private final boolean mFrontFacing;
+
+    /**
+     * @param frontFacing whether the configuration is for the front facing camera
+     */
+    CameraConfigNegotiator(Context context, boolean frontFacing) {
+        mContext = context.getApplicationContext();
+        mPreferences = mContext.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        mFrontFacing = frontFacing;
+        mKey = Build.MODEL + (frontFacing ? ".front" : ".back");
+        mVersion = getVersion(mContext);
+    }
+
+    /**
+     * Returns the configuration persisted for this device model, or null if it has not been
+     * calibrated yet or was calibrated by another version of this app or of Google Play services.
+     */
+    Config getStoredConfig() {
+        if (!mVersion.equals(mPreferences.getString(mKey + ".version", null))) {
+            return null;
+        }
+        int width = mPreferences.getInt(mKey + ".width", 0);
+        int height = mPreferences.getInt(mKey + ".height", 0);
+        float fps = mPreferences.getFloat(mKey + ".fps", 0.0f);
+        if (width <= 0 || height <= 0 || fps <= 0.0f) {
+            return null;
+        }
+        return new Config(width, height, fps);
+    }
+
+    /**
+     * Starts the calibration on a background thread, once the detector warm-up is done.  There
+     * must be at most one calibration in the process at a time, since it opens the camera and
+     * needs the CPU to itself; see {@link FaceTrackerApplication#getCameraCalibration()}.  The
+     * caller must not start the camera or detection until the calibration has reported.
+     *
+     * @param monitor tells whether other detection ran during the measurement, in which case the
+     *                result is used but not persisted
+     */
+    Calibration calibrateInBackground(final DetectorWarmup warmup,
+                                      final WorkloadMonitor monitor) {
+        Calibration calibration = new Calibration(new Callable<Config>() {
+            @Override
+            public Config call() {
+                try {
+                    warmup.getReadiness().get();
+                } catch (Exception e) {
+                    Log.w(TAG, "Calibration skipped: detector is not available.", e);
+                    return null;
+                }
+                return calibrate(monitor);
+            }
+        });
+        new Thread(calibration.mTask, "CameraCalibration").start();
+        return calibration;
+    }
+
+    /**
+     * Enumerates the supported preview sizes and frame rates, measures detection throughput at
+     * candidate sizes, and returns the chosen configuration.  The configuration is persisted
+     * only if no other detection ran during the measurement.  Blocks for the length of the
+     * calibration; must not be called on the UI thread, nor while the camera is in use.
+     *
+     * @return the chosen configuration, or null if the camera capabilities are not available
+     */
+    Config calibrate(WorkloadMonitor monitor) {
+        List<int[]> sizes = new ArrayList<>();
+        List<int[]> fpsRanges = new ArrayList<>();
+        if (!readCapabilities(sizes, fpsRanges) || fpsRanges.isEmpty()) {
+            return null;
+        }
+
+        // 大きいサイズから順に計測し、目標の検出レートを満たす最初のサイズを選ぶ
+        List<int[]> candidates = selectCandidates(sizes);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        long start = SystemClock.elapsedRealtime();
+        // 計測中に他の検出が動くと、検出のスループットが実際より低く計測される
+        int workloadStarts = monitor.getDetectionStartCount();
+        boolean idle = !monitor.isDetectionRunning();
+        FaceDetector detector = DetectionProfile.DEFAULT.createDetector(mContext);
+        int[] chosen = candidates.get(candidates.size() - 1);
+        float throughput = 0.0f;
+        try {
+            for (int[] size : candidates) {
+                throughput = measureThroughput(detector, size[0], size[1]);
+                Log.d(TAG, "Detection throughput at " + size[0] + "x" + size[1] + ": "
+                        + throughput + " fps");
+                if (throughput >= TARGET_DETECTION_FPS) {
+                    chosen = size;
+                    break;
+                }
+            }
+        } finally {
+            detector.release();
+        }
+
+        // 検出が追いつかない端末では、フレームレートも下げる
+        float fps = chooseFps(fpsRanges, Math.min(MAX_FPS, Math.max(throughput,
+                TARGET_DETECTION_FPS)));
+        Config config = new Config(chosen[0], chosen[1], fps);
+        if (!idle || monitor.isDetectionRunning()
+                || monitor.getDetectionStartCount() != workloadStarts) {
+            Log.w(TAG, "Calibrated " + mKey + " while detection was running; not persisting "
+                    + config);
+            return config;
+        }
+        mPreferences.edit()
+                .putInt(mKey + ".width", config.mWidth)
+                .putInt(mKey + ".height", config.mHeight)
+                .putFloat(mKey + ".fps", config.mFps)
+                .putString(mKey + ".version", mVersion)
+                .apply();
+        Log.i(TAG, "Calibrated " + mKey + " (" + mVersion + ") in "
+                + (SystemClock.elapsedRealtime() - start) + " ms: " + config);
+        return config;
+    }
+
+    /**
+     * Forgets the configuration stored for this device model.
+     */
+    void clearStoredConfig() {
+        mPreferences.edit()
+                .remove(mKey + ".width")
+                .remove(mKey + ".height")
+                .remove(mKey + ".fps")
+                .remove(mKey + ".version")
+                .apply();
+    }
+
+    /**
+     * Returns the versions of this app and of Google Play services, which the face detector
+     * comes with, as one string.
+     */
+    private static String getVersion(Context context) {
+        PackageManager packageManager = context.getPackageManager();
+        int appVersion = 0;
+        int gmsVersion = 0;
+        try {
+            appVersion = packageManager.getPackageInfo(context.getPackageName(), 0).versionCode;
+            gmsVersion = packageManager.getPackageInfo(
+                    GoogleApiAvailability.GOOGLE_PLAY_SERVICES_PACKAGE, 0).versionCode;
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.w(TAG, "Could not read the package versions.", e);
+        }
+        return appVersion + "/" + gmsVersion;
+    }
+
+    /**
+     * Opens the camera just long enough to read its supported preview sizes, as (width, height),
+     * and preview frame rate ranges, as (min, max) in frames per second times 1000.
+     *
+     * @return false if the camera could not be opened
+     */
+    @SuppressWarnings("deprecation")
+    private boolean readCapabilities(List<int[]> sizes, List<int[]> fpsRanges) {
+        int facing = mFrontFacing
+                ? Camera.CameraInfo.CAMERA_FACING_FRONT : Camera.CameraInfo.CAMERA_FACING_BACK;
+        Camera.CameraInfo info = new Camera.CameraInfo();
+        int cameraId = -1;
+        for (int i = 0; i < Camera.getNumberOfCameras(); i++) {
+            Camera.getCameraInfo(i, info);
+            if (info.facing == facing) {
+                cameraId = i;
+                break;
+            }
+        }
+        if (cameraId < 0) {
+            return false;
+        }
+
+        Camera camera;
+        try {
+            camera = Camera.open(cameraId);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Could not open the camera to read its capabilities.", e);
+            return false;
+        }
+        try {
+            Camera.Parameters parameters = camera.getParameters();
+            for (Camera.Size size : parameters.getSupportedPreviewSizes()) {
+                sizes.add(new int[]{size.width, size.height});
+            }
+            List<int[]> ranges = parameters.getSupportedPreviewFpsRange();
+            if (ranges != null) {
+                fpsRanges.addAll(ranges);
+            }
+        } finally {
+            camera.release();
+        }
+        return true;
+    }
+
+    /**
+     * Returns up to {@link #MAX_CANDIDATES} landscape sizes of distinct widths within the
+     * candidate range, largest first.
+     */
+    private static List<int[]> selectCandidates(List<int[]> sizes) {
+        List<int[]> sorted = new ArrayList<>(sizes);
+        Collections.sort(sorted, Collections.reverseOrder(new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                return Long.compare((long) a[0] * a[1], (long) b[0] * b[1]);
+            }
+        }));
+        List<int[]> candidates = new ArrayList<>();
+        int lastWidth = 0;
+        for (int[] size : sorted) {
+            int width = size[0];
+            if (width < MIN_CANDIDATE_WIDTH || width > MAX_CANDIDATE_WIDTH
+                    || width < size[1] || width == lastWidth) {
+                continue;
+            }
+            candidates.add(size);
+            lastWidth = width;
+            if (candidates.size() == MAX_CANDIDATES) {
+                break;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns the highest maximum frame rate of the supported ranges which does not exceed the
+     * desired rate, or the lowest one if all exceed it.
+     */
+    private static float chooseFps(List<int[]> ranges, float desiredFps) {
+        float best = -1.0f;
+        float lowest = Float.MAX_VALUE;
+        for (int[] range : ranges) {
+            float fps = range[Camera.Parameters.PREVIEW_FPS_MAX_INDEX] / 1000.0f;
+            lowest = Math.min(lowest, fps);
+            if (fps <= desiredFps && fps > best) {
+                best = fps;
+            }
+        }
+        return (best > 0.0f) ? best : lowest;
+    }
+
+    /**
+     * Runs detection on synthetic frames of the given size and returns the achieved frames per
+     * second.
+     */
+    private static float measureThroughput(FaceDetector detector, int width, int height) {
+        int lumaSize = width * height;
+        byte[] data = new byte[lumaSize + lumaSize / 2];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                data[y * width + x] = (byte) ((x ^ y) & 0xff);
+            }
+        }
+        Arrays.fill(data, lumaSize, data.length, (byte) 128);
+        Frame frame = new Frame.Builder()
+                .setImageData(ByteBuffer.wrap(data), width, height, ImageFormat.NV21)
+                .build();
+
+        // 最初の数回（サイズ変更に伴う初期化を含む）は計測に含めない
+        for (int i = 0; i < WARMUP_FRAME_COUNT; i++) {
+            detector.detect(frame);
+        }
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < MEASURED_FRAME_COUNT; i++) {
+            detector.detect(frame);
+        }
+        long elapsed = Math.max(SystemClock.elapsedRealtimeNanos() - start, 1);
+        return MEASURED_FRAME_COUNT * 1e9f / elapsed;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import com.google.android.gms.samples.vision.face.facetracker.ui.camera.CameraSourcePreview;
+import com.google.android.gms.samples.vision.face.facetracker.ui.camera.GraphicOverlay;
+import com.google.android.gms.vision.CameraSource;
+
+/**
+ * Frame source backed by the live camera, shown in the camera preview.  The camera source owns
+ * the detector, so releasing this source releases the whole pipeline.
+ */
+final class CameraFrameSource implements FrameSource {
+    private final CameraSource mCameraSource;
+    private final CameraSourcePreview mPreview;
+    private final GraphicOverlay mOverlay;
+
+    CameraFrameSource(CameraSource cameraSource, CameraSourcePreview preview,
+                      GraphicOverlay overlay) {
+        mCameraSource = cameraSource;
+        mPreview = preview;
+        mOverlay = overlay;
+    }
+
+    /**
+     * Requests the camera to start; it is started asynchronously on the preview's camera thread.
+     */
+    @Override
+    public void start() {
+        mPreview.start(mCameraSource, mOverlay);
+    }
+
+    @Override
+    public void stop() {
+        mPreview.stop();
+    }
+
+    @Override
+    public void release() {
+        // カメラはカメラスレッドで、停止の後に解放される
+        mPreview.release();
+    }
+}
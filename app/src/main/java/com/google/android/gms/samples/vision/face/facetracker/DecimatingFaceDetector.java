@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.graphics.ImageFormat;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Face detector which runs the underlying detector on a downscaled copy of each frame, so that
+ * the camera preview can use a higher resolution than detection needs.<p>
+ *
+ * The frame is scaled by one factor in both directions, preserving its aspect ratio, so that it
+ * fits within the detection size.  Detected faces are scaled back up, i.e., they are reported in
+ * the coordinates of the original frame, and the overlay's camera info (the preview size) maps
+ * them correctly without further changes.<p>
+ *
+ * Frames are expected in NV21 format, as delivered by
+ * {@link com.google.android.gms.vision.CameraSource}.  Only the luma plane is decimated, by
+ * nearest-neighbor sampling through precomputed index tables, into a buffer which is reused from
+ * frame to frame; the decimated frame is handed to the detector with neutral chroma.
+ */
+class DecimatingFaceDetector extends Detector<Face> {
+    static final int DEFAULT_DETECTION_WIDTH = 320;
+    static final int DEFAULT_DETECTION_HEIGHT = 240;
+
+    private final Detector<Face> mDelegate;
+    private volatile int mDetectionWidth;
+    private volatile int mDetectionHeight;
+
+    // 以下は検出スレッドからのみ使用する。元のフレームか検出サイズが変わったときだけ作り直す
+    private int mSourceWidth;
+    private int mSourceHeight;
+    private int mConfiguredDetectionWidth;
+    private int mConfiguredDetectionHeight;
+    private int mWidth;
+    private int mHeight;
+    private float mScale = 1.0f;
+    private int[] mColumns = new int[0];
+    private int[] mRowOffsets = new int[0];
+    private byte[] mBuffer = new byte[0];
+
+    DecimatingFaceDetector(Detector<Face> delegate) {
+        this(delegate, DEFAULT_DETECTION_WIDTH, DEFAULT_DETECTION_HEIGHT);
+    }
+
+    /**
+     * @param detectionWidth  maximum width of the frames passed to the underlying detector, in the
+     *                        orientation of the camera frames
+     * @param detectionHeight maximum height of the frames passed to the underlying detector
+     */
+    DecimatingFaceDetector(Detector<Face> delegate, int detectionWidth, int detectionHeight) {
+        mDelegate = delegate;
+        mDetectionWidth = detectionWidth;
+        mDetectionHeight = detectionHeight;
+    }
+
+    /**
+     * Changes the maximum size of the frames passed to the underlying detector, from the next
+     * frame on.  May be called from any thread.
+     */
+    void setDetectionSize(int detectionWidth, int detectionHeight) {
+        mDetectionWidth = detectionWidth;
+        mDetectionHeight = detectionHeight;
+    }
+
+    @Override
+    public SparseArray<Face> detect(Frame frame) {
+        Frame.Metadata metadata = frame.getMetadata();
+        int width = metadata.getWidth();
+        int height = metadata.getHeight();
+        int detectionWidth = mDetectionWidth;
+        int detectionHeight = mDetectionHeight;
+        if (width != mSourceWidth || height != mSourceHeight
+                || detectionWidth != mConfiguredDetectionWidth
+                || detectionHeight != mConfiguredDetectionHeight) {
+            configure(width, height, detectionWidth, detectionHeight);
+        }
+        if (mScale <= 1.0f) {
+            // 検出サイズより小さいフレームは、そのまま検出する
+            return mDelegate.detect(frame);
+        }
+
+        Frame decimated = new Frame.Builder()
+                .setImageData(decimate(frame.getGrayscaleImageData()), mWidth, mHeight,
+                        ImageFormat.NV21)
+                .setId(metadata.getId())
+                .setTimestampMillis(metadata.getTimestampMillis())
+                .setRotation(metadata.getRotation())
+                .build();
+
+        SparseArray<Face> faces = mDelegate.detect(decimated);
+        SparseArray<Face> results = new SparseArray<>(faces.size());
+        for (int i = 0, size = faces.size(); i < size; i++) {
+            results.append(faces.keyAt(i), Faces.transform(faces.valueAt(i), mScale, 0.0f, 0.0f));
+        }
+        return results;
+    }
+
+    @Override
+    public boolean isOperational() {
+        return mDelegate.isOperational();
+    }
+
+    @Override
+    public boolean setFocus(int id) {
+        return mDelegate.setFocus(id);
+    }
+
+    @Override
+    public void release() {
+        mDelegate.release();
+        super.release();
+    }
+
+    /**
+     * Chooses the decimated size for frames of the given size and builds the index tables.
+     */
+    private void configure(int sourceWidth, int sourceHeight, int detectionWidth,
+                           int detectionHeight) {
+        mSourceWidth = sourceWidth;
+        mSourceHeight = sourceHeight;
+        mConfiguredDetectionWidth = detectionWidth;
+        mConfiguredDetectionHeight = detectionHeight;
+        mScale = Math.max((float) sourceWidth / detectionWidth,
+                (float) sourceHeight / detectionHeight);
+        if (mScale <= 1.0f) {
+            return;
+        }
+
+        // NV21 のため、偶数の大きさに揃える
+        mWidth = Math.max(2, (int) (sourceWidth / mScale) & ~1);
+        mHeight = Math.max(2, (int) (sourceHeight / mScale) & ~1);
+
+        mColumns = new int[mWidth];
+        for (int x = 0; x < mWidth; x++) {
+            mColumns[x] = Math.min((int) ((x + 0.5f) * mScale), sourceWidth - 1);
+        }
+        mRowOffsets = new int[mHeight];
+        for (int y = 0; y < mHeight; y++) {
+            mRowOffsets[y] = Math.min((int) ((y + 0.5f) * mScale), sourceHeight - 1) * sourceWidth;
+        }
+
+        int lumaSize = mWidth * mHeight;
+        mBuffer = new byte[lumaSize + lumaSize / 2];
+        // 色差は常に中間値（無彩色）とする
+        Arrays.fill(mBuffer, lumaSize, mBuffer.length, (byte) 128);
+    }
+
+    /**
+     * Samples the luma plane into the reusable buffer, which is returned as an NV21 image.
+     */
+    private ByteBuffer decimate(ByteBuffer source) {
+        int[] columns = mColumns;
+        int[] rowOffsets = mRowOffsets;
+        byte[] buffer = mBuffer;
+        int i = 0;
+        if (source.hasArray()) {
+            byte[] array = source.array();
+            int base = source.arrayOffset();
+            for (int y = 0; y < mHeight; y++) {
+                int row = base + rowOffsets[y];
+                for (int x = 0; x < mWidth; x++) {
+                    buffer[i++] = array[row + columns[x]];
+                }
+            }
+        } else {
+            for (int y = 0; y < mHeight; y++) {
+                int row = rowOffsets[y];
+                for (int x = 0; x < mWidth; x++) {
+                    buffer[i++] = source.get(row + columns[x]);
+                }
+            }
+        }
+        return ByteBuffer.wrap(buffer);
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.graphics.PointF;
+
+import com.google.android.gms.vision.face.Face;
+import com.google.android.gms.vision.face.Landmark;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Writes detection results to a compact binary log, which {@link DetectionPlayer} can replay.
+ * The log is written through a memory mapping of the file, extended chunk by chunk, so the
+ * writer itself allocates nothing per record; reading the values from the GMS {@link Face} may
+ * allocate.  The format, all big-endian, is:
+ * <pre>
+ * header: int magic ("FDET"), int version, int width, int height, int facing,
+ *         long frameCount, long committedLength
+ * frame:  long timestampMillis, int frameId, int faceCount, faceCount * face
+ * face:   int id, float left, top, width, height, eulerY, eulerZ,
+ *         float leftEyeOpen, rightEyeOpen, smiling, int landmarkCount,
+ *         landmarkCount * (int type, float x, float y)
+ * </pre>
+ * A face count of {@link #REPEATED_FRAME} marks a frame for which the detector repeated its
+ * previous results (see {@link AdaptiveFaceDetector}).  Width and height are those of the upright
+ * frame, which the face coordinates refer to.<p>
+ *
+ * The file grows by whole chunks, whose unwritten tails are zero.  So that a log which was not
+ * closed (e.g., because the app was killed) can still be replayed, the header's frame count and
+ * committed length, in bytes from the start of the file, are updated after each complete frame;
+ * a reader must stop there.  Not thread safe.
+ */
+final class DetectionLogWriter implements Closeable {
+    static final int MAGIC = 0x46444554;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 5 * 4 + 2 * 8;
+    static final int FRAME_COUNT_OFFSET = 5 * 4;
+    static final int COMMITTED_LENGTH_OFFSET = FRAME_COUNT_OFFSET + 8;
+    static final int FRAME_HEADER_SIZE = 8 + 4 + 4;
+    static final int FACE_SIZE = 4 + 9 * 4 + 4;
+    static final int LANDMARK_SIZE = 4 + 4 + 4;
+    static final int REPEATED_FRAME = -1;
+
+    // ファイルを一度に拡張する大きさ
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final MappedByteBuffer mHeader;
+    private MappedByteBuffer mBuffer;
+    private long mBufferStart;
+    private long mFrameCount;
+    // 書き込み中のフレームで、まだ書かれていない顔の数
+    private int mRemainingFaces;
+    private long mCommittedLength = HEADER_SIZE;
+
+    /**
+     * @param facing the {@link com.google.android.gms.vision.CameraSource} facing of the camera
+     *               the detections come from
+     */
+    DetectionLogWriter(File file, int facing) throws IOException {
+        mFile = new RandomAccessFile(file, "rw");
+        try {
+            mFile.setLength(0);
+            mChannel = mFile.getChannel();
+            mHeader = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            mHeader.putInt(MAGIC);
+            mHeader.putInt(VERSION);
+            mHeader.putInt(0);
+            mHeader.putInt(0);
+            mHeader.putInt(facing);
+            mHeader.putLong(0);
+            mHeader.putLong(HEADER_SIZE);
+            mBufferStart = HEADER_SIZE;
+            mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, mBufferStart, CHUNK_SIZE);
+        } catch (IOException | RuntimeException e) {
+            mFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sets the size of the upright frame, which the face coordinates refer to.
+     */
+    void setFrameSize(int width, int height) {
+        mHeader.putInt(8, width);
+        mHeader.putInt(12, height);
+    }
+
+    /**
+     * Appends the start of a frame with the given number of faces, each of which must then be
+     * written with {@link #writeFace}, or {@link #REPEATED_FRAME}.  The frame is committed once
+     * its last face has been written.
+     */
+    void writeFrame(long timestampMillis, int frameId, int faceCount) throws IOException {
+        if (mRemainingFaces > 0) {
+            throw new IllegalStateException(mRemainingFaces + " faces of the previous frame are"
+                    + " missing");
+        }
+        ensureCapacity(FRAME_HEADER_SIZE);
+        mBuffer.putLong(timestampMillis);
+        mBuffer.putInt(frameId);
+        mBuffer.putInt(faceCount);
+        mRemainingFaces = Math.max(faceCount, 0);
+        if (mRemainingFaces == 0) {
+            commitFrame();
+        }
+    }
+
+    /**
+     * Appends one face of the current frame.
+     */
+    void writeFace(int faceId, Face face) throws IOException {
+        List<Landmark> landmarks = face.getLandmarks();
+        int landmarkCount = landmarks.size();
+        ensureCapacity(FACE_SIZE + landmarkCount * LANDMARK_SIZE);
+
+        PointF position = face.getPosition();
+        mBuffer.putInt(faceId);
+        mBuffer.putFloat(position.x);
+        mBuffer.putFloat(position.y);
+        mBuffer.putFloat(face.getWidth());
+        mBuffer.putFloat(face.getHeight());
+        mBuffer.putFloat(face.getEulerY());
+        mBuffer.putFloat(face.getEulerZ());
+        mBuffer.putFloat(face.getIsLeftEyeOpenProbability());
+        mBuffer.putFloat(face.getIsRightEyeOpenProbability());
+        mBuffer.putFloat(face.getIsSmilingProbability());
+        mBuffer.putInt(landmarkCount);
+        for (int i = 0; i < landmarkCount; i++) {
+            Landmark landmark = landmarks.get(i);
+            PointF point = landmark.getPosition();
+            mBuffer.putInt(landmark.getType());
+            mBuffer.putFloat(point.x);
+            mBuffer.putFloat(point.y);
+        }
+        if (--mRemainingFaces == 0) {
+            commitFrame();
+        }
+    }
+
+    long getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * Truncates the file to the committed frames and closes it.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            mBuffer.force();
+            mHeader.force();
+            mChannel.truncate(mCommittedLength);
+        } finally {
+            mFile.close();
+        }
+    }
+
+    /**
+     * Records in the header that the frame just written is complete.
+     */
+    private void commitFrame() {
+        mFrameCount++;
+        mCommittedLength = mBufferStart + mBuffer.position();
+        // 読み手はフレーム数と長さの両方で止まるので、どちらも書き終えたフレームだけを指す
+        mHeader.putLong(COMMITTED_LENGTH_OFFSET, mCommittedLength);
+        mHeader.putLong(FRAME_COUNT_OFFSET, mFrameCount);
+    }
+
+    /**
+     * Maps the next chunk of the file if the current one cannot hold the given number of bytes.
+     */
+    private void ensureCapacity(int size) throws IOException {
+        if (mBuffer.remaining() >= size) {
+            return;
+        }
+        mBufferStart += mBuffer.position();
+        mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, mBufferStart,
+                Math.max(CHUNK_SIZE, size));
+    }
+}
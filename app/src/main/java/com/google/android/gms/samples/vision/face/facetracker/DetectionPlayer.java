@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.graphics.PointF;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.google.android.gms.samples.vision.face.facetracker.ui.camera.GraphicOverlay;
+import com.google.android.gms.vision.face.Face;
+import com.google.android.gms.vision.face.Landmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Frame source which replays a detection log written by {@link DetectionLogWriter} into a
+ * {@link FaceOverlayProcessor}, so that field sessions drive the same face lifecycle (new,
+ * updated, missing, done) and overlay as live detection, deterministically and without a camera
+ * or detector.<p>
+ *
+ * The log is read through a memory mapping, up to the frame count and committed length in its
+ * header, so that the zeroed tail of a log which was not closed is not replayed.  Frames are
+ * replayed either in real time, paced by
+ * their timestamps, or as fast as possible, on a dedicated thread; frames recorded as repeats get
+ * the previous frame's face instances again, as they did live.  Replay runs once and logs the
+ * achieved frame rate at the end.
+ */
+final class DetectionPlayer implements FrameSource {
+    private static final String TAG = "DetectionPlayer";
+
+    private final File mFile;
+    private final FaceOverlayProcessor mProcessor;
+    private final GraphicOverlay mOverlay;
+    private final boolean mRealTime;
+
+    private Thread mThread;
+    private volatile boolean mRunning;
+    private volatile long mReplayedFrames;
+
+    /**
+     * @param realTime true to pace the frames by their timestamps, false to replay them as fast
+     *                 as the processor takes them
+     */
+    DetectionPlayer(File file, FaceOverlayProcessor processor, GraphicOverlay overlay,
+                    boolean realTime) {
+        mFile = file;
+        mProcessor = processor;
+        mOverlay = overlay;
+        mRealTime = realTime;
+    }
+
+    /**
+     * Maps the log, sets the overlay's camera info from its header, and starts the replay.
+     */
+    @Override
+    public void start() throws IOException {
+        if (mThread != null) {
+            return;
+        }
+        final MappedByteBuffer log;
+        RandomAccessFile file = new RandomAccessFile(mFile, "r");
+        try {
+            // マップした内容は、ファイルを閉じた後も読める
+            long length = file.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Detection log too large: " + mFile);
+            }
+            log = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } finally {
+            file.close();
+        }
+        if (log.remaining() < DetectionLogWriter.HEADER_SIZE
+                || log.getInt() != DetectionLogWriter.MAGIC
+                || log.getInt() != DetectionLogWriter.VERSION) {
+            throw new IOException("Not a detection log: " + mFile);
+        }
+        int width = log.getInt();
+        int height = log.getInt();
+        int facing = log.getInt();
+        final long frameCount = log.getLong();
+        long committedLength = log.getLong();
+        if (committedLength < DetectionLogWriter.HEADER_SIZE
+                || committedLength > log.capacity()) {
+            throw new IOException("Invalid committed length " + committedLength + " in " + mFile);
+        }
+        // 書き終えたフレームより後ろ（未使用のチャンクの残り）は読まない
+        log.limit((int) committedLength);
+        if (width > 0 && height > 0) {
+            mOverlay.setCameraInfo(width, height, facing);
+        }
+        mOverlay.clear();
+
+        mRunning = true;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                play(log, frameCount);
+            }
+        }, "DetectionReplay");
+        mThread.start();
+    }
+
+    @Override
+    public void stop() {
+        mRunning = false;
+        Thread thread = mThread;
+        mThread = null;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Stops the replay and removes the replayed faces from the overlay.
+     */
+    @Override
+    public void release() {
+        stop();
+        mProcessor.release();
+    }
+
+    long getReplayedFrames() {
+        return mReplayedFrames;
+    }
+
+    private void play(MappedByteBuffer log, long frameCount) {
+        long start = SystemClock.elapsedRealtime();
+        long firstTimestampMillis = -1;
+        long count = 0;
+        SparseArray<Face> faces = new SparseArray<>();
+        try {
+            while (mRunning && count < frameCount
+                    && log.remaining() >= DetectionLogWriter.FRAME_HEADER_SIZE) {
+                long timestampMillis = log.getLong();
+                log.getInt();
+                int faceCount = log.getInt();
+                if (faceCount != DetectionLogWriter.REPEATED_FRAME) {
+                    faces = new SparseArray<>(faceCount);
+                    for (int i = 0; i < faceCount; i++) {
+                        int id = log.getInt();
+                        faces.append(id, readFace(log, id));
+                    }
+                }
+
+                // 記録された時刻の間隔どおりに再生する
+                if (firstTimestampMillis < 0) {
+                    firstTimestampMillis = timestampMillis;
+                } else if (mRealTime) {
+                    long delay = (timestampMillis - firstTimestampMillis)
+                            - (SystemClock.elapsedRealtime() - start);
+                    if (delay > 0) {
+                        Thread.sleep(delay);
+                    }
+                }
+
+                mProcessor.update(faces, timestampMillis);
+                count++;
+                mReplayedFrames = count;
+            }
+        } catch (InterruptedException e) {
+            Log.d(TAG, "Replay stopped.");
+        } catch (RuntimeException e) {
+            // 途中で途切れたログ
+            Log.w(TAG, "Detection log truncated after " + count + " frames.", e);
+        }
+
+        long elapsed = Math.max(SystemClock.elapsedRealtime() - start, 1);
+        Log.i(TAG, "Replayed " + count + " frames in " + elapsed + " ms ("
+                + (count * 1000.0f / elapsed) + " fps)");
+    }
+
+    private static Face readFace(MappedByteBuffer log, int id) {
+        float left = log.getFloat();
+        float top = log.getFloat();
+        float width = log.getFloat();
+        float height = log.getFloat();
+        float eulerY = log.getFloat();
+        float eulerZ = log.getFloat();
+        float leftEyeOpen = log.getFloat();
+        float rightEyeOpen = log.getFloat();
+        float smiling = log.getFloat();
+        Landmark[] landmarks = new Landmark[log.getInt()];
+        for (int i = 0; i < landmarks.length; i++) {
+            int type = log.getInt();
+            float x = log.getFloat();
+            float y = log.getFloat();
+            landmarks[i] = new Landmark(new PointF(x, y), type);
+        }
+        return new Face(id, new PointF(left, top), width, height, eulerY, eulerZ, landmarks,
+                leftEyeOpen, rightEyeOpen, smiling);
+    }
+}
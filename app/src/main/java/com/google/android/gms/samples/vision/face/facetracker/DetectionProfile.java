@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.content.Context;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.ThrottlingGovernor;
+import com.google.android.gms.vision.face.FaceDetector;
+
+/**
+ * Immutable set of face detector options.  Profiles are compared by value, so that a detector
+ * built for one profile can be reused for an equal one.
+ */
+final class DetectionProfile {
+    /**
+     * The options the app has always used: fast mode, all classifications, no landmarks, tracking.
+     */
+    static final DetectionProfile DEFAULT = new Builder().build();
+
+    /**
+     * The cheapest profile: only the most prominent, reasonably large face, with no landmarks and
+     * no classifications.
+     */
+    static final DetectionProfile PROMINENT_FACE = new Builder()
+            .setClassificationEnabled(false)
+            .setMinFaceSize(0.2f)
+            .setProminentFaceOnly(true)
+            .build();
+
+    /**
+     * The most detailed profile: accurate mode with landmarks and classifications.
+     */
+    static final DetectionProfile DETAILED = new Builder()
+            .setMode(FaceDetector.ACCURATE_MODE)
+            .setLandmarksEnabled(true)
+            .build();
+
+    private final int mMode;
+    private final boolean mLandmarksEnabled;
+    private final boolean mClassificationEnabled;
+    private final float mMinFaceSize;
+    private final boolean mProminentFaceOnly;
+    private final boolean mTrackingEnabled;
+
+    private DetectionProfile(Builder builder) {
+        mMode = builder.mMode;
+        mLandmarksEnabled = builder.mLandmarksEnabled;
+        mClassificationEnabled = builder.mClassificationEnabled;
+        mMinFaceSize = builder.mMinFaceSize;
+        mProminentFaceOnly = builder.mProminentFaceOnly;
+        mTrackingEnabled = builder.mTrackingEnabled;
+    }
+
+    /**
+     * Builds a face detector with the options of this profile.
+     */
+    FaceDetector createDetector(Context context) {
+        return new FaceDetector.Builder(context)
+                .setMode(mMode)
+                .setLandmarkType(mLandmarksEnabled
+                        ? FaceDetector.ALL_LANDMARKS : FaceDetector.NO_LANDMARKS)
+                .setClassificationType(mClassificationEnabled
+                        ? FaceDetector.ALL_CLASSIFICATIONS : FaceDetector.NO_CLASSIFICATIONS)
+                .setMinFaceSize(mMinFaceSize)
+                .setProminentFaceOnly(mProminentFaceOnly)
+                .setTrackingEnabled(mTrackingEnabled)
+                .build();
+    }
+
+    /**
+     * Returns this profile restricted to the detector modes allowed in the given throttling tier.
+     */
+    DetectionProfile restrictTo(ThrottlingGovernor.Tier tier) {
+        if (!tier.mFastModeOnly && !tier.mProminentFaceOnly) {
+            return this;
+        }
+        Builder builder = toBuilder();
+        if (tier.mFastModeOnly) {
+            builder.setMode(FaceDetector.FAST_MODE).setLandmarksEnabled(false);
+        }
+        if (tier.mProminentFaceOnly) {
+            builder.setProminentFaceOnly(true);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns a builder initialized with the options of this profile.
+     */
+    Builder toBuilder() {
+        return new Builder()
+                .setMode(mMode)
+                .setLandmarksEnabled(mLandmarksEnabled)
+                .setClassificationEnabled(mClassificationEnabled)
+                .setMinFaceSize(mMinFaceSize)
+                .setProminentFaceOnly(mProminentFaceOnly)
+                .setTrackingEnabled(mTrackingEnabled);
+    }
+
+    int getMode() {
+        return mMode;
+    }
+
+    boolean isLandmarksEnabled() {
+        return mLandmarksEnabled;
+    }
+
+    boolean isClassificationEnabled() {
+        return mClassificationEnabled;
+    }
+
+    float getMinFaceSize() {
+        return mMinFaceSize;
+    }
+
+    boolean isProminentFaceOnly() {
+        return mProminentFaceOnly;
+    }
+
+    boolean isTrackingEnabled() {
+        return mTrackingEnabled;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DetectionProfile)) {
+            return false;
+        }
+        DetectionProfile other = (DetectionProfile) o;
+        return mMode == other.mMode
+                && mLandmarksEnabled == other.mLandmarksEnabled
+                && mClassificationEnabled == other.mClassificationEnabled
+                && Float.compare(mMinFaceSize, other.mMinFaceSize) == 0
+                && mProminentFaceOnly == other.mProminentFaceOnly
+                && mTrackingEnabled == other.mTrackingEnabled;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mMode;
+        result = 31 * result + (mLandmarksEnabled ? 1 : 0);
+        result = 31 * result + (mClassificationEnabled ? 1 : 0);
+        result = 31 * result + Float.floatToIntBits(mMinFaceSize);
+        result = 31 * result + (mProminentFaceOnly ? 1 : 0);
+        result = 31 * result + (mTrackingEnabled ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "DetectionProfile{mode="
+                + (mMode == FaceDetector.ACCURATE_MODE ? "accurate" : "fast")
+                + ", landmarks=" + mLandmarksEnabled
+                + ", classification=" + mClassificationEnabled
+                + ", minFaceSize=" + mMinFaceSize
+                + ", prominentFaceOnly=" + mProminentFaceOnly
+                + ", tracking=" + mTrackingEnabled + "}";
+    }
+
+    /**
+     * Builder for {@link DetectionProfile}.  Unset options take the face detector's defaults,
+     * except for classification, which is enabled.
+     */
+    static final class Builder {
+        private int mMode = FaceDetector.FAST_MODE;
+        private boolean mLandmarksEnabled;
+        private boolean mClassificationEnabled = true;
+        // FaceDetector の既定値（画像の幅に対する割合）
+        private float mMinFaceSize = 0.1f;
+        private boolean mProminentFaceOnly;
+        private boolean mTrackingEnabled = true;
+
+        /**
+         * Sets {@link FaceDetector#FAST_MODE} or {@link FaceDetector#ACCURATE_MODE}.
+         */
+        Builder setMode(int mode) {
+            mMode = mode;
+            return this;
+        }
+
+        Builder setLandmarksEnabled(boolean landmarksEnabled) {
+            mLandmarksEnabled = landmarksEnabled;
+            return this;
+        }
+
+        Builder setClassificationEnabled(boolean classificationEnabled) {
+            mClassificationEnabled = classificationEnabled;
+            return this;
+        }
+
+        /**
+         * Sets the smallest face size to detect, as a proportion of the image width.
+         */
+        Builder setMinFaceSize(float minFaceSize) {
+            mMinFaceSize = minFaceSize;
+            return this;
+        }
+
+        Builder setProminentFaceOnly(boolean prominentFaceOnly) {
+            mProminentFaceOnly = prominentFaceOnly;
+            return this;
+        }
+
+        Builder setTrackingEnabled(boolean trackingEnabled) {
+            mTrackingEnabled = trackingEnabled;
+            return this;
+        }
+
+        DetectionProfile build() {
+            return new DetectionProfile(this);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+
+import java.io.IOException;
+
+/**
+ * Processor which records the detections it receives to a {@link DetectionLogWriter} and passes
+ * them on, unchanged, to another processor.  A frame whose faces are the same instances as the
+ * previous frame's, i.e., a frame for which detection was skipped, is recorded as a repeat, so
+ * that replay reproduces the skip.  If writing fails, recording stops and the detections keep
+ * flowing to the other processor.
+ */
+final class DetectionRecorder implements Detector.Processor<Face> {
+    private static final String TAG = "DetectionRecorder";
+
+    private final Detector.Processor<Face> mDelegate;
+    private DetectionLogWriter mWriter;
+    private boolean mFrameSizeWritten;
+    private SparseArray<Face> mLastFaces;
+
+    /**
+     * @param writer the log to record to, which is closed when this processor is released
+     */
+    DetectionRecorder(Detector.Processor<Face> delegate, DetectionLogWriter writer) {
+        mDelegate = delegate;
+        mWriter = writer;
+    }
+
+    @Override
+    public void receiveDetections(Detector.Detections<Face> detections) {
+        if (mWriter != null) {
+            try {
+                record(detections);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not record detections; recording stopped.", e);
+                closeWriter();
+            }
+        }
+        mDelegate.receiveDetections(detections);
+    }
+
+    @Override
+    public void release() {
+        mDelegate.release();
+        closeWriter();
+    }
+
+    private void record(Detector.Detections<Face> detections) throws IOException {
+        Frame.Metadata metadata = detections.getFrameMetadata();
+        if (!mFrameSizeWritten) {
+            // 顔の座標は正立させた画像の座標なので、その大きさを記録する
+            int rotation = metadata.getRotation();
+            boolean swap = (rotation == Frame.ROTATION_90) || (rotation == Frame.ROTATION_270);
+            mWriter.setFrameSize(swap ? metadata.getHeight() : metadata.getWidth(),
+                    swap ? metadata.getWidth() : metadata.getHeight());
+            mFrameSizeWritten = true;
+        }
+
+        SparseArray<Face> faces = detections.getDetectedItems();
+        if (isRepeat(faces)) {
+            mWriter.writeFrame(metadata.getTimestampMillis(), metadata.getId(),
+                    DetectionLogWriter.REPEATED_FRAME);
+            return;
+        }
+        mLastFaces = faces;
+        mWriter.writeFrame(metadata.getTimestampMillis(), metadata.getId(), faces.size());
+        for (int i = 0, size = faces.size(); i < size; i++) {
+            mWriter.writeFace(faces.keyAt(i), faces.valueAt(i));
+        }
+    }
+
+    /**
+     * Returns true if the faces are the same instances as the previous frame's.
+     */
+    private boolean isRepeat(SparseArray<Face> faces) {
+        SparseArray<Face> last = mLastFaces;
+        if (last == null || faces.size() != last.size() || faces.size() == 0) {
+            return false;
+        }
+        for (int i = 0, size = faces.size(); i < size; i++) {
+            if (faces.keyAt(i) != last.keyAt(i) || faces.valueAt(i) != last.valueAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void closeWriter() {
+        if (mWriter == null) {
+            return;
+        }
+        try {
+            mWriter.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Could not close detection log.", e);
+        }
+        mWriter = null;
+    }
+}
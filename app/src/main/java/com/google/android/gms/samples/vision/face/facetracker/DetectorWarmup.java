@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.FaceDetector;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Builds a face detector in the background at process start, and runs a few synthetic frames
+ * through it, so that the native detection library is loaded and initialized (and the detection
+ * path compiled) before the first camera frame arrives.<p>
+ *
+ * The readiness future completes when the warm-up is done.  The warmed-up detector itself is
+ * handed to the first caller of {@link #takeDetector()}; later detectors are built as usual, but
+ * benefit from the already initialized library.  The time from process start to the first
+ * detected face is recorded as a startup metric.
+ */
+final class DetectorWarmup {
+    private static final String TAG = "DetectorWarmup";
+
+    static final int SYNTHETIC_FRAME_COUNT = 3;
+    private static final int SYNTHETIC_FRAME_WIDTH = 640;
+    private static final int SYNTHETIC_FRAME_HEIGHT = 480;
+
+    // ネイティブライブラリが使えるようになるのを待つ時間と間隔
+    private static final long OPERATIONAL_TIMEOUT_MILLIS = 10000;
+    private static final long OPERATIONAL_POLL_MILLIS = 100;
+
+    private final Context mContext;
+    private final long mStartMillis;
+    private final FutureTask<FaceDetector> mTask;
+
+    private boolean mTaken;
+    private volatile boolean mOperational;
+    private volatile long mWarmupMillis = -1;
+    private volatile long mTimeToFirstFaceMillis = -1;
+
+    /**
+     * @param startMillis process start time, on the {@link SystemClock#elapsedRealtime()} clock
+     */
+    DetectorWarmup(Context context, long startMillis) {
+        mContext = context.getApplicationContext();
+        mStartMillis = startMillis;
+        mTask = new FutureTask<>(new Callable<FaceDetector>() {
+            @Override
+            public FaceDetector call() {
+                return warmUp();
+            }
+        });
+    }
+
+    /**
+     * Starts the warm-up on a background thread.
+     */
+    void start() {
+        Thread thread = new Thread(mTask, "DetectorWarmup");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        thread.start();
+    }
+
+    /**
+     * Returns the future which completes when the warm-up is done.
+     */
+    Future<?> getReadiness() {
+        return mTask;
+    }
+
+    boolean isReady() {
+        return mTask.isDone();
+    }
+
+    /**
+     * Returns true if the detection library was operational at the end of the warm-up.
+     */
+    boolean isOperational() {
+        return mOperational;
+    }
+
+    /**
+     * Waits for the warm-up to finish and returns the warmed-up detector, which is built with
+     * {@link DetectionProfile#DEFAULT}.  Only the first call gets the detector; later calls, and
+     * calls after a failed warm-up, return null.
+     */
+    synchronized FaceDetector takeDetector() throws InterruptedException {
+        if (mTaken) {
+            return null;
+        }
+        mTaken = true;
+        try {
+            return mTask.get();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Detector warm-up failed.", e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Time the warm-up took, or -1 if it is not done.
+     */
+    long getWarmupMillis() {
+        return mWarmupMillis;
+    }
+
+    /**
+     * Notes that a face has been detected.  The first call records the time to the first face;
+     * later calls return right away.
+     */
+    void recordFace() {
+        if (mTimeToFirstFaceMillis >= 0) {
+            return;
+        }
+        synchronized (this) {
+            if (mTimeToFirstFaceMillis < 0) {
+                mTimeToFirstFaceMillis = SystemClock.elapsedRealtime() - mStartMillis;
+                Log.i(TAG, "Time to first face: " + mTimeToFirstFaceMillis + " ms");
+            }
+        }
+    }
+
+    /**
+     * Time from process start to the first detected face, or -1 if no face has been detected.
+     */
+    long getTimeToFirstFaceMillis() {
+        return mTimeToFirstFaceMillis;
+    }
+
+    private FaceDetector warmUp() {
+        long start = SystemClock.elapsedRealtime();
+        FaceDetector detector = DetectionProfile.DEFAULT.createDetector(mContext);
+
+        // Note: The first time that an app using face API is installed on a device, GMS will
+        // download a native library to the device in order to do detection.  Usually this
+        // completes before the app is run for the first time.  But if that download has not yet
+        // completed, then the detector will not detect any faces.
+        //
+        // isOperational() can be used to check if the required native library is currently
+        // available.  The detector will automatically become operational once the library
+        // download completes on device.
+        long deadline = start + OPERATIONAL_TIMEOUT_MILLIS;
+        while (!detector.isOperational() && SystemClock.elapsedRealtime() < deadline) {
+            SystemClock.sleep(OPERATIONAL_POLL_MILLIS);
+        }
+        mOperational = detector.isOperational();
+
+        if (mOperational) {
+            Frame frame = createSyntheticFrame();
+            for (int i = 0; i < SYNTHETIC_FRAME_COUNT; i++) {
+                detector.detect(frame);
+            }
+        } else {
+            Log.w(TAG, "Face detector dependencies are not yet available.");
+        }
+
+        mWarmupMillis = SystemClock.elapsedRealtime() - start;
+        Log.i(TAG, "Detector warm-up took " + mWarmupMillis + " ms");
+        return detector;
+    }
+
+    /**
+     * Creates an NV21 frame of camera size with a luma gradient.
+     */
+    private static Frame createSyntheticFrame() {
+        int width = SYNTHETIC_FRAME_WIDTH;
+        int height = SYNTHETIC_FRAME_HEIGHT;
+        int lumaSize = width * height;
+        byte[] data = new byte[lumaSize + lumaSize / 2];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                data[y * width + x] = (byte) ((x + y) & 0xff);
+            }
+        }
+        for (int i = lumaSize; i < data.length; i++) {
+            data[i] = (byte) 128;
+        }
+        return new Frame.Builder()
+                .setImageData(ByteBuffer.wrap(data), width, height, ImageFormat.NV21)
+                .build();
+    }
+}
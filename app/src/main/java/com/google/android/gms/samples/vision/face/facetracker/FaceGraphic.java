@@ -15,35 +15,28 @@
  */
 package com.google.android.gms.samples.vision.face.facetracker;
 
-import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.PointF;
 import android.graphics.Rect;
 import android.graphics.RectF;
-
+import android.os.SystemClock;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceLayout;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceState;
+import com.google.android.gms.samples.vision.face.facetracker.core.FrameClock;
+import com.google.android.gms.samples.vision.face.facetracker.core.Landmarks;
+import com.google.android.gms.samples.vision.face.facetracker.core.MotionPredictor;
+import com.google.android.gms.samples.vision.face.facetracker.core.TrackedFace;
 import com.google.android.gms.samples.vision.face.facetracker.ui.camera.GraphicOverlay;
-import com.google.android.gms.vision.face.Face;
-import com.google.android.gms.vision.face.Landmark;
-
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 /**
  * Graphic instance for rendering face position, orientation, and landmarks within an associated
- * graphic overlay view.
+ * graphic overlay view.  The positions of everything drawn are computed by a {@link FaceLayout};
+ * this class only draws them.
  */
 class FaceGraphic extends GraphicOverlay.Graphic {
-    private static final float FACE_POSITION_RADIUS = 10.0f;
-    private static final float ID_TEXT_SIZE = 40.0f;
-    private static final float ID_Y_OFFSET = 50.0f;
-    private static final float ID_X_OFFSET = -50.0f;
-    private static final float BOX_STROKE_WIDTH = 5.0f;
-
     private static final int COLOR_CHOICES[] = {
         Color.BLUE,
         Color.CYAN,
@@ -53,54 +46,103 @@ class FaceGraphic extends GraphicOverlay.Graphic {
         Color.WHITE,
         Color.YELLOW
     };
-    private static int mCurrentColorIndex = 0;
 
     private Paint mFacePositionPaint;
     private Paint mIdPaint;
     private Paint mBoxPaint;
+    private Paint mImagePaint;
+
+    // 検出スレッドが更新する最新の状態と、検出と検出の間の外挿（mStateLock で保護する）
+    private final Object mStateLock = new Object();
+    private final TrackedFace mTrack = new TrackedFace();
+    // uptime に足すとフレームの時刻になる値（FrameClock を参照）
+    private long mFrameClockOffsetMillis;
 
-    private volatile Face mFace;
     private int mFaceId;
-    private float mFaceHappiness;
 
     private Bitmap mImage;
 
-    FaceGraphic(GraphicOverlay overlay, Context context) {
-        super(overlay);
+    // draw() is called for every face on every frame, so all of its working storage is
+    // preallocated here and reused instead of being allocated per call.
+    private final FaceState mDrawState = new FaceState();
+    private final FaceLayout mDrawLayout = new FaceLayout();
+    private final Rect mImageSource = new Rect();
+    private final RectF mImageDestination = new RectF();
 
-        // 顔認識 1件ごとに、当クラスのインスタンスが 1つ生成される
+    private final SmileLabelRenderer mLabelRenderer;
 
-        mCurrentColorIndex = (mCurrentColorIndex + 1) % COLOR_CHOICES.length;
-        final int selectedColor = COLOR_CHOICES[mCurrentColorIndex];
+    /**
+     * @param sticker shared, immutable image drawn above the head (see {@link StickerCache})
+     * @param labelRenderer shared renderer for the smile level label
+     */
+    FaceGraphic(GraphicOverlay overlay, Bitmap sticker, SmileLabelRenderer labelRenderer) {
+        super(overlay);
+
+        // 顔が認識されなくなった後は、FaceGraphicPool によって別の顔に再利用される
+        // （色は reset で顔 ID に応じて設定する）
 
         mFacePositionPaint = new Paint();
-        mFacePositionPaint.setColor(selectedColor);
 
         mIdPaint = new Paint();
-        mIdPaint.setColor(selectedColor);
-        mIdPaint.setTextSize(ID_TEXT_SIZE);
+        mIdPaint.setTextSize(FaceLayout.ID_TEXT_SIZE);
+        mLabelRenderer = labelRenderer;
 
         mBoxPaint = new Paint();
-        mBoxPaint.setColor(selectedColor);
         mBoxPaint.setStyle(Paint.Style.STROKE);
-        mBoxPaint.setStrokeWidth(BOX_STROKE_WIDTH);
+        mBoxPaint.setStrokeWidth(FaceLayout.BOX_STROKE_WIDTH);
+
+        mImagePaint = new Paint();
 
-        // ウサギの耳のイメージを準備する
-        mImage = BitmapFactory.decodeResource(context.getResources(), R.drawable.bunny_ears);
+        // ウサギの耳のイメージは、全ての顔で共有する（インスタンスごとにデコードしない）
+        mImage = sticker;
+        mImageSource.set(0, 0, mImage.getWidth(), mImage.getHeight());
     }
 
-    void setId(int id) {
-        mFaceId = id;
+    /**
+     * Prepares this graphic to show the face with the given ID, discarding any previous face.  The
+     * color is derived from the face ID, so it is deterministic and needs no shared state.
+     */
+    void reset(int faceId) {
+        mFaceId = faceId;
+        synchronized (mStateLock) {
+            mTrack.reset();
+        }
+
+        final int selectedColor =
+                COLOR_CHOICES[(faceId & Integer.MAX_VALUE) % COLOR_CHOICES.length];
+        mFacePositionPaint.setColor(selectedColor);
+        mIdPaint.setColor(selectedColor);
+        mBoxPaint.setColor(selectedColor);
     }
 
 
     /**
-     * Updates the face instance from the detection of the most recent frame.  Invalidates the
-     * relevant portions of the overlay to trigger a redraw.
+     * Updates the face state from the detection of the most recent frame, after smoothing.  The
+     * overlay is redrawn once per frame by {@link FaceOverlayProcessor}, not once per face.
+     *
+     * @param timestampMillis   timestamp of the frame the face was detected in
+     * @param clockOffsetMillis value which, added to {@link SystemClock#uptimeMillis()}, gives
+     *                          the time on the frame timestamp clock (see {@link FrameClock})
+     * @param config            how to extrapolate the face until the next detection
+     * @return distance, in preview pixels, between the predicted and the detected face center
      */
-    void updateFace(Face face) {
-        mFace = face;
-        postInvalidate(); // postInvalidate メソッドを呼び出すことで、結果的に draw メソッドが呼び出される
+    float updateFace(FaceState state, long timestampMillis, long clockOffsetMillis,
+                     MotionPredictor.Config config) {
+        float innovation;
+        synchronized (mStateLock) {
+            mFrameClockOffsetMillis = clockOffsetMillis;
+            innovation = mTrack.update(state, timestampMillis, config);
+        }
+        return innovation;
+    }
+
+    /**
+     * Copies the motion predictor state into {@code out}; see {@link MotionPredictor#getState}.
+     */
+    void getPredictorState(float[] out) {
+        synchronized (mStateLock) {
+            mTrack.getPredictorState(out);
+        }
     }
 
     /**
@@ -108,100 +150,55 @@ class FaceGraphic extends GraphicOverlay.Graphic {
      */
     @Override
     public void draw(Canvas canvas) {
-        Face face = mFace;
-        if (face == null) {
-            return;
+        FaceState face = mDrawState;
+        boolean extrapolating;
+        synchronized (mStateLock) {
+            long now = SystemClock.uptimeMillis() + mFrameClockOffsetMillis;
+            if (!mTrack.predict(now, face)) {
+                return;
+            }
+            extrapolating = mTrack.isExtrapolating(now);
         }
 
+        // 1回の描画の間は、同じ変換を使う
+        FaceLayout layout = mDrawLayout;
+        layout.layout(face, getTransform());
+
         // 認識した顔領域の中心に円（点）を描画
-        // （ translateX、translateY メソッドによって、フロントカメラ、リアカメラの場合の座標の差異を吸収している）
-        float centerX = translateX(face.getPosition().x + face.getWidth() / 2);
-        float centerY = translateY(face.getPosition().y + face.getHeight() / 2);
-        canvas.drawCircle(centerX, centerY, FACE_POSITION_RADIUS, mFacePositionPaint);
-
-        // 認識した顔領域の情報を元に、その顔領域を覆う長方形を描画
-        // （ scaleX、scaleY メソッドは、それぞれ、取得した座標を、実際の画面に合わせて調整するメソッド）
-        float xOffset = scaleX(face.getWidth() / 2.0f);
-        float yOffset = scaleY(face.getHeight() / 2.0f);
-        float left = centerX - xOffset;
-        float top = centerY - yOffset;
-        float right = centerX + xOffset;
-        float bottom = centerY + yOffset;
-        canvas.drawRect(left, top, right, bottom, mBoxPaint);
-
-        // 目、口などを検知した位置の情報を取得
-        List<Landmark> landmarks = face.getLandmarks();
-
-        // 目、口などの位置の情報を保持する Map を作成
-        Map<Integer, PointF> positions = new HashMap<>();
-
-        for (Landmark landmark : landmarks) {
-            switch (landmark.getType()) {
-                case Landmark.LEFT_EYE:
-                    // 左目を検知した場合
-                    positions.put(Landmark.LEFT_EYE, landmark.getPosition());
-                    break;
-                case Landmark.RIGHT_EYE:
-                    // 右目を検知した場合
-                    positions.put(Landmark.RIGHT_EYE, landmark.getPosition());
-                    break;
-                case Landmark.LEFT_MOUTH:
-                    // 口の左端を検知した場合
-                    positions.put(Landmark.LEFT_MOUTH, landmark.getPosition());
-                    break;
-                case Landmark.RIGHT_MOUTH:
-                    // 口の右端を検知した場合
-                    positions.put(Landmark.RIGHT_MOUTH, landmark.getPosition());
-                    break;
-                case Landmark.BOTTOM_MOUTH:
-                    // 口の下端を検知した場合
-                    positions.put(Landmark.BOTTOM_MOUTH, landmark.getPosition());
-                    break;
-            }
-        }
+        canvas.drawCircle(layout.mCenterX, layout.mCenterY, FaceLayout.FACE_POSITION_RADIUS,
+                mFacePositionPaint);
+
+        // 認識した顔領域を覆う長方形を描画
+        canvas.drawRect(layout.mLeft, layout.mTop, layout.mRight, layout.mBottom, mBoxPaint);
 
         // 左目位置に四角形を描画
-        if (positions.containsKey(Landmark.LEFT_EYE)) {
-            float x = translateX(positions.get(Landmark.LEFT_EYE).x);
-            float y = translateY(positions.get(Landmark.LEFT_EYE).y);
-            float offset = face.getWidth() / 5.0f;
-            canvas.drawRect(x - offset, y - offset, x + offset, y + offset, mBoxPaint);
+        if (layout.mHasLeftEye) {
+            drawLandmarkBox(canvas, layout, Landmarks.LEFT_EYE);
         }
         // 右目位置に四角形を描画
-        if (positions.containsKey(Landmark.RIGHT_EYE)) {
-            float x = translateX(positions.get(Landmark.RIGHT_EYE).x);
-            float y = translateY(positions.get(Landmark.RIGHT_EYE).y);
-            float offset = face.getWidth() / 5.0f;
-            canvas.drawRect(x - offset, y - offset, x + offset, y + offset, mBoxPaint);
+        if (layout.mHasRightEye) {
+            drawLandmarkBox(canvas, layout, Landmarks.RIGHT_EYE);
         }
         // 口の位置に四角形を描画
-        if (positions.containsKey(Landmark.LEFT_MOUTH) &&
-                positions.containsKey(Landmark.RIGHT_MOUTH) &&
-                positions.containsKey(Landmark.BOTTOM_MOUTH)) {
-            float mouthX1 = translateX(positions.get(Landmark.LEFT_MOUTH).x);
-            float mouthTop = (positions.get(Landmark.LEFT_MOUTH).y < positions.get(Landmark.RIGHT_MOUTH).y)
-                    ? translateY(positions.get(Landmark.LEFT_MOUTH).y) : translateY(positions.get(Landmark.RIGHT_MOUTH).y);
-            float mouthX2 = translateX(positions.get(Landmark.RIGHT_MOUTH).x);
-            float mouthBottom = translateY(positions.get(Landmark.BOTTOM_MOUTH).y);
-
-            float mouthLeft = Math.min(mouthX1, mouthX2);
-            float mouthRight = Math.max(mouthX1, mouthX2);
-            canvas.drawRect(mouthLeft, mouthTop, mouthRight, mouthBottom, mBoxPaint);
+        if (layout.mHasMouth) {
+            canvas.drawRect(layout.mMouthLeft, layout.mMouthTop, layout.mMouthRight,
+                    layout.mMouthBottom, mBoxPaint);
         }
 
         // 笑顔の度合いを 0.00 - 1.00 の数値で表示
-        canvas.drawText("笑顔レベル: " + String.format("%.2f", face.getIsSmilingProbability()),
-                left - ID_X_OFFSET, bottom - ID_Y_OFFSET, mIdPaint);
+        mLabelRenderer.draw(canvas, face.mSmilingProbability, layout.mLabelX, layout.mLabelY,
+                mIdPaint);
 
         // 笑顔の度合いが一定レベルを超えたら、ウサギの耳のイメージを頭の位置の上に描画
-        if (face.getIsSmilingProbability() > 0.3f) {
-            Rect original = new Rect(0, 0, mImage.getWidth(), mImage.getHeight());
-
-            float offsetBottom = scaleY(face.getHeight() / 4.0f);
-            float offsetTop = offsetBottom + (right - left); // 正方形になるように描画
-            RectF destination = new RectF(left, centerY - offsetTop, right, centerY - offsetBottom);
+        if (layout.mHasSticker) {
+            mImageDestination.set(layout.mStickerLeft, layout.mStickerTop, layout.mStickerRight,
+                    layout.mStickerBottom);
+            canvas.drawBitmap(mImage, mImageSource, mImageDestination, mImagePaint);
+        }
 
-            canvas.drawBitmap(mImage, original, destination, new Paint());
+        // 外挿している間は、次のフレームでも位置が変わるので再描画を要求する
+        if (extrapolating) {
+            postInvalidate();
         }
 
 //        // Draws a circle at the position of the detected face, with the face's track id below.
@@ -222,4 +219,14 @@ class FaceGraphic extends GraphicOverlay.Graphic {
 //        float bottom = y + yOffset;
 //        canvas.drawRect(left, top, right, bottom, mBoxPaint);
     }
+
+    /**
+     * Draws a square centered on a landmark which has already been mapped to view coordinates.
+     */
+    private void drawLandmarkBox(Canvas canvas, FaceLayout layout, int type) {
+        float x = layout.mPoints[type * 2];
+        float y = layout.mPoints[type * 2 + 1];
+        float offset = layout.mEyeBoxOffset;
+        canvas.drawRect(x - offset, y - offset, x + offset, y + offset, mBoxPaint);
+    }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.graphics.Bitmap;
+
+import com.google.android.gms.samples.vision.face.facetracker.ui.camera.GraphicOverlay;
+
+/**
+ * Bounded pool of face graphics, so that face graphics (with their paints and working buffers) are
+ * reused as faces come and go rather than allocated for every new face.  Keeps counters of how
+ * often an acquired graphic was reused from the pool.
+ */
+final class FaceGraphicPool {
+    static final int DEFAULT_CAPACITY = 8;
+
+    private final GraphicOverlay mOverlay;
+    private final Bitmap mSticker;
+    private final SmileLabelRenderer mLabelRenderer;
+    private final FaceGraphic[] mPool;
+    private int mSize;
+
+    private long mAcquireCount;
+    private long mReuseCount;
+
+    FaceGraphicPool(GraphicOverlay overlay, Bitmap sticker, int capacity) {
+        mOverlay = overlay;
+        mSticker = sticker;
+        mLabelRenderer = new SmileLabelRenderer();
+        mPool = new FaceGraphic[capacity];
+    }
+
+    /**
+     * Returns a graphic reset for the given face, reusing a pooled one if available.
+     */
+    synchronized FaceGraphic acquire(int faceId) {
+        mAcquireCount++;
+        FaceGraphic graphic;
+        if (mSize > 0) {
+            mSize--;
+            graphic = mPool[mSize];
+            mPool[mSize] = null;
+            mReuseCount++;
+        } else {
+            graphic = new FaceGraphic(mOverlay, mSticker, mLabelRenderer);
+        }
+        graphic.reset(faceId);
+        return graphic;
+    }
+
+    /**
+     * Returns a graphic which is no longer shown to the pool.  If the pool is full, the graphic is
+     * left to be garbage collected.
+     */
+    synchronized void release(FaceGraphic graphic) {
+        if (mSize < mPool.length) {
+            mPool[mSize++] = graphic;
+        }
+    }
+
+    /**
+     * Number of graphics currently waiting in the pool.
+     */
+    synchronized int size() {
+        return mSize;
+    }
+
+    synchronized long getAcquireCount() {
+        return mAcquireCount;
+    }
+
+    synchronized long getReuseCount() {
+        return mReuseCount;
+    }
+
+    /**
+     * Fraction of acquired graphics which were reused rather than newly allocated.
+     */
+    synchronized float getReuseRate() {
+        return (mAcquireCount == 0) ? 0.0f : (float) mReuseCount / mAcquireCount;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.graphics.PointF;
+
+import com.google.android.gms.vision.face.Face;
+
+/**
+ * Assigns stable face IDs to faces whose detector-assigned IDs cannot be relied upon across
+ * frames, e.g., because they were detected in different crops of the frame or by different
+ * detector instances.  A face is given the ID of the previously seen face which it overlaps most
+ * (by intersection over union), or a new ID if it overlaps none sufficiently.<p>
+ *
+ * Call {@link #beginFrame()}, then {@link #assign(Face)} for each face of the frame, then
+ * {@link #endFrame()}.  Not thread safe.
+ */
+final class FaceIdStitcher {
+    static final float DEFAULT_MIN_OVERLAP = 0.3f;
+    static final int DEFAULT_MAX_MISSING_FRAMES = 3;
+
+    private final float mMinOverlap;
+    private final int mMaxMissingFrames;
+
+    // 既知の顔（ID と、最後に検出された位置）
+    private int mCount;
+    private int[] mIds = new int[8];
+    private float[] mBoxes = new float[8 * 4];
+    private int[] mMissingFrames = new int[8];
+    private boolean[] mMatched = new boolean[8];
+    private int mNextId;
+
+    FaceIdStitcher() {
+        this(DEFAULT_MIN_OVERLAP, DEFAULT_MAX_MISSING_FRAMES);
+    }
+
+    FaceIdStitcher(float minOverlap, int maxMissingFrames) {
+        mMinOverlap = minOverlap;
+        mMaxMissingFrames = maxMissingFrames;
+    }
+
+    void beginFrame() {
+        for (int i = 0; i < mCount; i++) {
+            mMatched[i] = false;
+        }
+    }
+
+    /**
+     * Returns the stable ID of the given face, which must be expressed in full-frame coordinates.
+     */
+    int assign(Face face) {
+        PointF position = face.getPosition();
+        float left = position.x;
+        float top = position.y;
+        float right = left + face.getWidth();
+        float bottom = top + face.getHeight();
+
+        int best = -1;
+        float bestOverlap = mMinOverlap;
+        for (int i = 0; i < mCount; i++) {
+            if (mMatched[i]) {
+                continue;
+            }
+            float overlap = overlap(i, left, top, right, bottom);
+            if (overlap >= bestOverlap) {
+                best = i;
+                bestOverlap = overlap;
+            }
+        }
+
+        if (best < 0) {
+            best = add(mNextId++);
+        }
+        mMatched[best] = true;
+        mMissingFrames[best] = 0;
+        mBoxes[best * 4] = left;
+        mBoxes[best * 4 + 1] = top;
+        mBoxes[best * 4 + 2] = right;
+        mBoxes[best * 4 + 3] = bottom;
+        return mIds[best];
+    }
+
+    /**
+     * Forgets faces which have not been seen for more than the allowed number of frames.
+     */
+    void endFrame() {
+        for (int i = mCount - 1; i >= 0; i--) {
+            if (!mMatched[i] && ++mMissingFrames[i] > mMaxMissingFrames) {
+                removeAt(i);
+            }
+        }
+    }
+
+    private float overlap(int i, float left, float top, float right, float bottom) {
+        float width = Math.min(right, mBoxes[i * 4 + 2]) - Math.max(left, mBoxes[i * 4]);
+        float height = Math.min(bottom, mBoxes[i * 4 + 3]) - Math.max(top, mBoxes[i * 4 + 1]);
+        if (width <= 0 || height <= 0) {
+            return 0.0f;
+        }
+        float intersection = width * height;
+        float area = (right - left) * (bottom - top)
+                + (mBoxes[i * 4 + 2] - mBoxes[i * 4]) * (mBoxes[i * 4 + 3] - mBoxes[i * 4 + 1]);
+        return intersection / (area - intersection);
+    }
+
+    private int add(int id) {
+        if (mCount == mIds.length) {
+            int capacity = mCount * 2;
+            mIds = copyOf(mIds, capacity);
+            mMissingFrames = copyOf(mMissingFrames, capacity);
+            boolean[] matched = new boolean[capacity];
+            System.arraycopy(mMatched, 0, matched, 0, mCount);
+            mMatched = matched;
+            float[] boxes = new float[capacity * 4];
+            System.arraycopy(mBoxes, 0, boxes, 0, mCount * 4);
+            mBoxes = boxes;
+        }
+        mIds[mCount] = id;
+        return mCount++;
+    }
+
+    private void removeAt(int i) {
+        int last = --mCount;
+        mIds[i] = mIds[last];
+        mMissingFrames[i] = mMissingFrames[last];
+        mMatched[i] = mMatched[last];
+        System.arraycopy(mBoxes, last * 4, mBoxes, i * 4, 4);
+    }
+
+    private static int[] copyOf(int[] array, int capacity) {
+        int[] copy = new int[capacity];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceSmoother;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceState;
+import com.google.android.gms.samples.vision.face.facetracker.core.FrameClock;
+import com.google.android.gms.samples.vision.face.facetracker.core.MotionPredictor;
+import com.google.android.gms.samples.vision.face.facetracker.ui.camera.GraphicOverlay;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.face.Face;
+
+import java.util.ArrayList;
+
+/**
+ * Processor which consumes all of the faces detected in a frame at once and applies the resulting
+ * additions, updates, and removals of face graphics to the overlay as a single batch, so that each
+ * frame costs one overlay update and one redraw regardless of the number of faces.<p>
+ *
+ * Follows the same per-face lifecycle as a {@link com.google.android.gms.vision.MultiProcessor}
+ * with one tracker per face: a face which is missing from a frame is hidden, and its graphic is
+ * returned to a {@link FaceGraphicPool} for reuse once it has been missing for more than
+ * {@link #DEFAULT_MAX_GAP_FRAMES} frames.<p>
+ *
+ * Each face is smoothed over time by a {@link FaceSmoother} before it is drawn, so that the
+ * overlay stays stable even when the detector output jitters or runs at a reduced frame rate.
+ * Between detections, the face graphics extrapolate each face to the draw time with a
+ * {@link MotionPredictor}, configured through {@link #setPredictionConfig}.  The predictors are
+ * updated by the frame timestamps, not by the time the detections arrive, so that a replayed
+ * session is tracked the same way however fast it is replayed; a {@link FrameClock} maps the
+ * draw time onto the same clock.
+ */
+final class FaceOverlayProcessor implements Detector.Processor<Face> {
+    /**
+     * Number of consecutive frames that a face may be missing before it is assumed to be gone,
+     * matching the default of {@link com.google.android.gms.vision.MultiProcessor}.
+     */
+    static final int DEFAULT_MAX_GAP_FRAMES = 3;
+
+    private static final float PREDICTION_ERROR_SMOOTHING = 0.05f;
+
+    private final GraphicOverlay mOverlay;
+    private final FaceGraphicPool mGraphicPool;
+    private final int mMaxGapFrames;
+
+    // 検出中の顔（顔 ID ごと）。検出スレッドからのみアクセスされる
+    private final SparseArray<FaceTrack> mTracks = new SparseArray<>();
+    private final ArrayList<GraphicOverlay.Graphic> mAdded = new ArrayList<>();
+    private final ArrayList<GraphicOverlay.Graphic> mRemoved = new ArrayList<>();
+    // オーバーレイから取り除いた後で、プールに戻すグラフィック
+    private final ArrayList<FaceGraphic> mDone = new ArrayList<>();
+    // 取り除いたグラフィックは、もう描画されなくなってからプールに戻す
+    private final GraphicOverlay.Recycler mRecycler = new GraphicOverlay.Recycler() {
+        @Override
+        public void recycle(GraphicOverlay.Graphic graphic) {
+            mGraphicPool.release((FaceGraphic) graphic);
+        }
+    };
+    private int mFrameIndex;
+    private long mFrameTimestampMillis;
+    private final FrameClock mFrameClock = new FrameClock();
+    private volatile boolean mSmoothingEnabled = true;
+    private volatile MotionPredictor.Config mPredictionConfig = MotionPredictor.Config.DEFAULT;
+    // 予測誤差（予測した顔の中心と検出した中心の距離）の指数移動平均
+    private volatile float mMeanPredictionError;
+
+    FaceOverlayProcessor(GraphicOverlay overlay, StickerCache stickerCache) {
+        this(overlay, stickerCache, DEFAULT_MAX_GAP_FRAMES);
+    }
+
+    FaceOverlayProcessor(GraphicOverlay overlay, StickerCache stickerCache, int maxGapFrames) {
+        mOverlay = overlay;
+        mGraphicPool = new FaceGraphicPool(overlay, stickerCache.get(R.drawable.bunny_ears),
+                FaceGraphicPool.DEFAULT_CAPACITY);
+        mMaxGapFrames = maxGapFrames;
+    }
+
+    /**
+     * Returns the pool which face graphics are reused from, e.g., to read its statistics.
+     */
+    FaceGraphicPool getGraphicPool() {
+        return mGraphicPool;
+    }
+
+    /**
+     * Enables or disables temporal smoothing of the detected faces.
+     */
+    void setSmoothingEnabled(boolean enabled) {
+        mSmoothingEnabled = enabled;
+    }
+
+    /**
+     * Sets how faces are extrapolated between detections.
+     */
+    void setPredictionConfig(MotionPredictor.Config config) {
+        mPredictionConfig = config;
+    }
+
+    /**
+     * Running average of the distance, in preview pixels, between where the motion predictor
+     * expected each face and where it was detected.
+     */
+    float getMeanPredictionError() {
+        return mMeanPredictionError;
+    }
+
+    /**
+     * Copies the motion predictor state of the face graphic with the given ID; see
+     * {@link MotionPredictor#getState}.  Must be called on the detector thread.
+     *
+     * @return false if no such face is being tracked
+     */
+    boolean getPredictorState(int faceId, float[] out) {
+        FaceTrack track = mTracks.get(faceId);
+        if (track == null) {
+            return false;
+        }
+        track.mGraphic.getPredictorState(out);
+        return true;
+    }
+
+    /**
+     * Updates the overlay from the faces detected in the most recent frame.
+     */
+    @Override
+    public void receiveDetections(Detector.Detections<Face> detections) {
+        update(detections.getDetectedItems(), detections.getFrameMetadata().getTimestampMillis());
+    }
+
+    /**
+     * Updates the overlay from the faces detected in a frame, keyed by face ID, e.g., as replayed
+     * from a recording.  Must be called on the thread which delivers detections.
+     */
+    void update(SparseArray<Face> faces, long timestampMillis) {
+        mFrameIndex++;
+        mFrameTimestampMillis = timestampMillis;
+        // 予測はフレームの時刻で行い、描画時には uptime をこの時計に換算する
+        mFrameClock.onFrame(timestampMillis, SystemClock.uptimeMillis());
+
+        for (int i = 0, size = faces.size(); i < size; i++) {
+            int faceId = faces.keyAt(i);
+            FaceTrack track = mTracks.get(faceId);
+            if (track == null) {
+                track = onNewItem(faceId);
+                mTracks.put(faceId, track);
+            }
+            onUpdate(track, faces.valueAt(i));
+        }
+
+        // 逆順に走査することで、走査中に removeAt できる
+        for (int i = mTracks.size() - 1; i >= 0; i--) {
+            FaceTrack track = mTracks.valueAt(i);
+            if (track.mLastSeenFrame == mFrameIndex) {
+                continue;
+            }
+            onMissing(track);
+            if (track.mMissingFrames > mMaxGapFrames) {
+                onDone(track);
+                mTracks.removeAt(i);
+            }
+        }
+
+        commit(faces.size() > 0);
+    }
+
+    /**
+     * Removes all face graphics from the overlay.
+     */
+    @Override
+    public void release() {
+        for (int i = 0, size = mTracks.size(); i < size; i++) {
+            onDone(mTracks.valueAt(i));
+        }
+        mTracks.clear();
+        commit(false);
+        mFrameClock.reset();
+    }
+
+    /**
+     * Start tracking the detected face instance within the face overlay.
+     */
+    private FaceTrack onNewItem(int faceId) {
+        return new FaceTrack(mGraphicPool.acquire(faceId));
+    }
+
+    /**
+     * Update the position/characteristics of the face, showing its graphic if it was hidden.
+     */
+    private void onUpdate(FaceTrack track, Face face) {
+        track.mLastSeenFrame = mFrameIndex;
+        track.mMissingFrames = 0;
+        if (face == track.mLastFace) {
+            // 検出を省略したフレームでは、前回と同じ結果が渡される。位置は FaceGraphic 側の予測に任せる
+            return;
+        }
+        track.mLastFace = face;
+
+        Faces.copyState(face, track.mState);
+        if (mSmoothingEnabled) {
+            track.mSmoother.apply(track.mState, mFrameTimestampMillis);
+        } else {
+            track.mSmoother.reset();
+        }
+        // 認識した情報を画面上に描画する
+        float error = track.mGraphic.updateFace(track.mState, mFrameTimestampMillis,
+                mFrameClock.getOffsetMillis(), mPredictionConfig);
+        mMeanPredictionError += PREDICTION_ERROR_SMOOTHING * (error - mMeanPredictionError);
+        if (!track.mVisible) {
+            track.mVisible = true;
+            mAdded.add(track.mGraphic);
+        }
+    }
+
+    /**
+     * Hide the graphic when the corresponding face was not detected.  This can happen for
+     * intermediate frames temporarily (e.g., if the face was momentarily blocked from view).
+     */
+    private void onMissing(FaceTrack track) {
+        track.mMissingFrames++;
+        hide(track);
+    }
+
+    /**
+     * Called when the face is assumed to be gone for good.  The graphic is returned to the pool
+     * once it has been removed from the overlay and the overlay has drawn without it.
+     */
+    private void onDone(FaceTrack track) {
+        hide(track);
+        mDone.add(track.mGraphic);
+    }
+
+    private void hide(FaceTrack track) {
+        if (track.mVisible) {
+            track.mVisible = false;
+            mRemoved.add(track.mGraphic);
+        }
+    }
+
+    /**
+     * Applies the pending changes to the overlay in one update.  Even with no additions or
+     * removals, the overlay still needs a redraw when visible faces have moved.
+     */
+    private void commit(boolean facesUpdated) {
+        if (facesUpdated || !mAdded.isEmpty() || !mRemoved.isEmpty()) {
+            mOverlay.update(mAdded, mRemoved);
+        }
+        mAdded.clear();
+        mRemoved.clear();
+
+        for (int i = 0, size = mDone.size(); i < size; i++) {
+            mOverlay.recycle(mDone.get(i), mRecycler);
+        }
+        mDone.clear();
+    }
+
+    /**
+     * Per-face state which a {@link com.google.android.gms.vision.Tracker} would otherwise hold.
+     */
+    private static final class FaceTrack {
+        final FaceGraphic mGraphic;
+        final FaceState mState = new FaceState();
+        final FaceSmoother mSmoother = new FaceSmoother();
+        Face mLastFace;
+        boolean mVisible;
+        int mLastSeenFrame;
+        int mMissingFrames;
+
+        FaceTrack(FaceGraphic graphic) {
+            mGraphic = graphic;
+        }
+    }
+}
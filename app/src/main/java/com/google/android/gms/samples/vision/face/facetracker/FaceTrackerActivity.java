@@ -22,7 +22,10 @@ import android.app.Dialog;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.pm.PackageManager;
+import android.graphics.Point;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.design.widget.Snackbar;
 import android.support.v4.app.ActivityCompat;
 import android.support.v7.app.AppCompatActivity;
@@ -32,14 +35,17 @@ import android.view.View;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailability;
 import com.google.android.gms.vision.CameraSource;
-import com.google.android.gms.vision.MultiProcessor;
-import com.google.android.gms.vision.Tracker;
+import com.google.android.gms.vision.Detector;
 import com.google.android.gms.vision.face.Face;
-import com.google.android.gms.vision.face.FaceDetector;
+import com.google.android.gms.samples.vision.face.facetracker.core.ThrottlingGovernor;
 import com.google.android.gms.samples.vision.face.facetracker.ui.camera.CameraSourcePreview;
 import com.google.android.gms.samples.vision.face.facetracker.ui.camera.GraphicOverlay;
+import com.google.android.gms.samples.vision.face.facetracker.ui.camera.OverlaySurfaceRenderer;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Activity for the face tracker app.  This app detects faces with the rear facing camera, and draws
@@ -48,10 +54,98 @@ import java.io.IOException;
 public final class FaceTrackerActivity extends AppCompatActivity {
     private static final String TAG = "FaceTracker";
 
-    private CameraSource mCameraSource = null;
+    /**
+     * Boolean intent extra which selects drawing the overlay on a dedicated render thread rather
+     * than on the UI thread at launch.  A long press on the preview switches between the two
+     * while running.
+     */
+    public static final String EXTRA_RENDER_ON_SURFACE = "renderOnSurface";
+
+    // 実行中に切り替えた描画先を、再生成（画面回転など）後も引き継ぐ
+    private static final String STATE_RENDER_ON_SURFACE = "renderOnSurface";
+
+    /**
+     * Boolean intent extra which selects detecting faces only in regions around the known faces,
+     * with a periodic full-frame search for newcomers.
+     */
+    public static final String EXTRA_REGION_DETECTION = "regionDetection";
+
+    /**
+     * Integer intent extras which, when positive, select detecting faces at (at most) this
+     * resolution while the camera preview runs at the display resolution.
+     */
+    public static final String EXTRA_DETECTION_WIDTH = "detectionWidth";
+    public static final String EXTRA_DETECTION_HEIGHT = "detectionHeight";
+
+    /**
+     * Integer intent extra which, when greater than 1, selects running this many face detectors
+     * in parallel on successive frames.
+     */
+    public static final String EXTRA_DETECTOR_COUNT = "detectorCount";
+
+    /**
+     * String intent extra with the path of a frame recording to replay instead of using the
+     * camera, and boolean intent extra which selects replaying it in real time rather than as fast
+     * as possible.
+     */
+    public static final String EXTRA_REPLAY_FILE = "replayFile";
+    public static final String EXTRA_REPLAY_REAL_TIME = "replayRealTime";
+
+    /**
+     * String intent extra with the path of a file to record the camera frames to, for later
+     * replay.  Every received frame is recorded, with one detector or several.
+     */
+    public static final String EXTRA_RECORD_FILE = "recordFile";
+
+    /**
+     * String intent extra with the path of a file to record the detection results to, and string
+     * intent extra with the path of such a recording to replay into the overlay instead of using
+     * the camera and detector.  Replay follows {@link #EXTRA_REPLAY_REAL_TIME}.
+     */
+    public static final String EXTRA_RECORD_DETECTIONS_FILE = "recordDetectionsFile";
+    public static final String EXTRA_REPLAY_DETECTIONS_FILE = "replayDetectionsFile";
+
+    private FrameSource mFrameSource = null;
+    private AsyncFrameRecorder mFrameRecorder;
+    private FrameAdmissionDetector mFrameAdmission;
+    private ParallelFaceDetector mParallelDetector;
+    private final List<SwitchableFaceDetector> mSwitchableDetectors = new ArrayList<>();
+    private DetectionProfile mDetectionProfile = DetectionProfile.DEFAULT;
+    private AdaptiveFaceDetector mAdaptiveDetector;
+    private final List<DecimatingFaceDetector> mDecimatingDetectors = new ArrayList<>();
+    private ThrottlingGovernor mThrottlingGovernor;
+    private ThrottlingGovernor.Tier mThrottlingTier = ThrottlingGovernor.NORMAL;
 
     private CameraSourcePreview mPreview;
     private GraphicOverlay mGraphicOverlay;
+    private OverlaySurfaceRenderer mSurfaceRenderer;
+    // 初回の計測が終わった時に、カメラを起動してよいかどうか
+    private boolean mResumed;
+    // フレームソースを起動して、検出を行っているかどうか
+    private boolean mDetectionRunning;
+    // カメラの設定の計測が終わるのを待っている検出器
+    private Detector<Face> mCalibrationDetector;
+    private final CameraConfigNegotiator.Callback mCalibrationCallback =
+            new CameraConfigNegotiator.Callback() {
+                @Override
+                public void onCalibrated(CameraConfigNegotiator.Config config) {
+                    Detector<Face> detector = mCalibrationDetector;
+                    mCalibrationDetector = null;
+                    createCameraFrameSource(detector, (config != null)
+                            ? config : CameraConfigNegotiator.Config.DEFAULT);
+                    if (mResumed) {
+                        startCameraSource();
+                    }
+                }
+            };
+
+    // カメラのフレームが届いたことをプレビューに知らせる（起動後最初のフレームまでの時間の計測用）
+    private final Runnable mFrameMarker = new Runnable() {
+        @Override
+        public void run() {
+            mPreview.markFrame();
+        }
+    };
 
     private static final int RC_HANDLE_GMS = 9001;
     // permission request codes need to be < 256
@@ -71,6 +165,31 @@ public final class FaceTrackerActivity extends AppCompatActivity {
 
         mPreview = (CameraSourcePreview) findViewById(R.id.preview);
         mGraphicOverlay = (GraphicOverlay) findViewById(R.id.faceOverlay);
+        boolean renderOnSurface = getIntent().getBooleanExtra(EXTRA_RENDER_ON_SURFACE, false);
+        if (icicle != null) {
+            renderOnSurface = icicle.getBoolean(STATE_RENDER_ON_SURFACE, renderOnSurface);
+        }
+        setOverlayRenderedOnSurface(renderOnSurface);
+        mPreview.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View view) {
+                setOverlayRenderedOnSurface(mSurfaceRenderer == null);
+                Log.i(TAG, "Overlay drawn on " + ((mSurfaceRenderer != null)
+                        ? "the render thread." : "the UI thread."));
+                return true;
+            }
+        });
+
+        // 端末の温度・バッテリーの状態に応じて、検出を段階的に軽くする
+        mThrottlingGovernor = new ThrottlingGovernor(new AndroidDeviceConditions(this),
+                AndroidClock.INSTANCE, new HandlerScheduler(new Handler(Looper.getMainLooper())),
+                new ThrottlingGovernor.Listener() {
+                    @Override
+                    public void onTierChanged(ThrottlingGovernor.Transition transition) {
+                        Log.i(TAG, "Throttling tier transition at " + transition);
+                        setThrottlingTier(transition.mTo);
+                    }
+                });
 
         // Check for the camera permission before accessing the camera.  If the
         // permission is not granted yet, request permission.
@@ -117,55 +236,272 @@ public final class FaceTrackerActivity extends AppCompatActivity {
     /**
      * Creates and starts the camera.  Note that this uses a higher resolution in comparison
      * to other detection examples to enable the barcode detector to detect small barcodes
-     * at long distances.
+     * at long distances.  When a recording is to be replayed, the same pipeline is fed from the
+     * recording instead of the camera.  Until the camera configuration has been calibrated for
+     * this device, the camera is created only once the calibration is done.
      */
     private void createCameraSource() {
 
         Context context = getApplicationContext();
-        FaceDetector detector = new FaceDetector.Builder(context)
-                .setClassificationType(FaceDetector.ALL_CLASSIFICATIONS)
-                .build();
 
-        detector.setProcessor(
-                new MultiProcessor.Builder<>(new GraphicFaceTrackerFactory())
-                        .build());
-
-        if (!detector.isOperational()) {
-            // Note: The first time that an app using face API is installed on a device, GMS will
-            // download a native library to the device in order to do detection.  Usually this
-            // completes before the app is run for the first time.  But if that download has not yet
-            // completed, then the above call will not detect any faces.
-            //
-            // isOperational() can be used to check if the required native library is currently
-            // available.  The detector will automatically become operational once the library
+        // 記録された検出結果を再生する場合は、カメラも検出器も使わない
+        String detectionsPath = getIntent().getStringExtra(EXTRA_REPLAY_DETECTIONS_FILE);
+        if (detectionsPath != null) {
+            mFrameSource = new DetectionPlayer(new File(detectionsPath),
+                    new FaceOverlayProcessor(mGraphicOverlay, StickerCache.getInstance(context)),
+                    mGraphicOverlay, getIntent().getBooleanExtra(EXTRA_REPLAY_REAL_TIME, true));
+            return;
+        }
+
+        mSwitchableDetectors.clear();
+        mDecimatingDetectors.clear();
+        int detectorCount = getIntent().getIntExtra(EXTRA_DETECTOR_COUNT, 1);
+        Detector<Face> detector;
+        if (detectorCount > 1) {
+            // 複数の検出器で、連続するフレームを並列に検出する
+            @SuppressWarnings("unchecked")
+            Detector<Face>[] detectors = new Detector[detectorCount];
+            for (int i = 0; i < detectorCount; i++) {
+                detectors[i] = createDetector(context);
+            }
+            mParallelDetector = new ParallelFaceDetector(detectors);
+            mParallelDetector.setFrameListener(mFrameMarker);
+            mParallelDetector.setMinIntervalMillis(mThrottlingTier.mMinDetectionIntervalMillis);
+            mFrameAdmission = null;
+            mAdaptiveDetector = null;
+            detector = mParallelDetector;
+        } else {
+            // 顔の数・動き・検出にかかる時間に応じて、フレームごとに検出を行うかどうかを決める
+            mAdaptiveDetector = new AdaptiveFaceDetector(createDetector(context));
+            mAdaptiveDetector.setMinIntervalMillis(
+                    mThrottlingTier.mMinDetectionIntervalMillis);
+
+            // カメラを検出で待たせず、常に最新のフレームだけを検出する
+            mFrameAdmission = new FrameAdmissionDetector(mAdaptiveDetector);
+            mFrameAdmission.setFrameListener(mFrameMarker);
+            mParallelDetector = null;
+            detector = mFrameAdmission;
+        }
+
+        // 1フレーム分の検出結果をまとめてオーバーレイに反映する
+        Detector.Processor<Face> processor =
+                new FaceOverlayProcessor(mGraphicOverlay, StickerCache.getInstance(context));
+        String recordDetectionsPath = getIntent().getStringExtra(EXTRA_RECORD_DETECTIONS_FILE);
+        if (recordDetectionsPath != null) {
+            try {
+                processor = new DetectionRecorder(processor, new DetectionLogWriter(
+                        new File(recordDetectionsPath), CameraSource.CAMERA_FACING_FRONT));
+            } catch (IOException e) {
+                Log.e(TAG, "Could not open detection log " + recordDetectionsPath, e);
+            }
+        }
+        detector.setProcessor(processor);
+
+        DetectorWarmup warmup = getDetectorWarmup();
+        if (!warmup.isReady()) {
+            // 検出器の準備ができるまでのフレームは、検出されずに捨てられる
+            Log.d(TAG, "Face detector is still warming up.");
+        } else if (!warmup.isOperational()) {
+            // The detector will automatically become operational once the native library
             // download completes on device.
             Log.w(TAG, "Face detector dependencies are not yet available.");
         }
 
-        mCameraSource = new CameraSource.Builder(context, detector)
-                .setRequestedPreviewSize(640, 480)
+        // 記録されたフレームを再生する場合は、カメラを使わない
+        String replayPath = getIntent().getStringExtra(EXTRA_REPLAY_FILE);
+        if (replayPath != null) {
+            mFrameSource = new FileFrameSource(new File(replayPath), detector, mGraphicOverlay,
+                    getIntent().getBooleanExtra(EXTRA_REPLAY_REAL_TIME, true));
+            return;
+        }
+
+        String recordPath = getIntent().getStringExtra(EXTRA_RECORD_FILE);
+        if (recordPath != null) {
+            try {
+                mFrameRecorder = new AsyncFrameRecorder(new FrameFileWriter(new File(recordPath),
+                        CameraSource.CAMERA_FACING_FRONT));
+                if (mParallelDetector != null) {
+                    mParallelDetector.setFrameRecorder(mFrameRecorder);
+                } else {
+                    mFrameAdmission.setFrameRecorder(mFrameRecorder);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Could not open frame recording " + recordPath, e);
+            }
+        }
+
+        // 端末の機種ごとに計測して保存した設定があれば使う。なければ、カメラと検出が動き出す前に計測する
+        CameraConfigNegotiator negotiator = new CameraConfigNegotiator(context, true);
+        CameraConfigNegotiator.Config config = negotiator.getStoredConfig();
+        if (config != null) {
+            createCameraFrameSource(detector, config);
+            return;
+        }
+        // 計測はプロセスで1回だけ行い、計測中に作り直されたアクティビティも同じ計測を待つ
+        mCalibrationDetector = detector;
+        getFaceTrackerApplication().getCameraCalibration().addCallback(mCalibrationCallback);
+    }
+
+    /**
+     * Creates the camera frame source for the given detector with the given camera
+     * configuration.
+     */
+    private void createCameraFrameSource(Detector<Face> detector,
+                                         CameraConfigNegotiator.Config config) {
+        Context context = getApplicationContext();
+        int previewWidth = config.mWidth;
+        int previewHeight = config.mHeight;
+        if (isDetectionDecimated()) {
+            // カメラのプレビューサイズは横長で指定する
+            Point displaySize = new Point();
+            getWindowManager().getDefaultDisplay().getSize(displaySize);
+            previewWidth = Math.max(displaySize.x, displaySize.y);
+            previewHeight = Math.min(displaySize.x, displaySize.y);
+        }
+
+        CameraSource cameraSource = new CameraSource.Builder(context, detector)
+                .setRequestedPreviewSize(previewWidth, previewHeight)
                 .setFacing(CameraSource.CAMERA_FACING_FRONT) // リアカメラに変更する場合は、CameraSource.CAMERA_FACING_BACK を設定
-                .setRequestedFps(30.0f)
+                .setRequestedFps(config.mFps)
                 .build();
+        mFrameSource = new CameraFrameSource(cameraSource, mPreview, mGraphicOverlay);
     }
 
     /**
-     * Restarts the camera.
+     * Creates one face detector, wrapped as selected by the intent extras.  Detectors are not
+     * thread safe, so each detection thread needs its own.
+     */
+    private Detector<Face> createDetector(final Context context) {
+        boolean regionDetection = isRegionDetection();
+        // 検出器はアプリ起動時にウォームアップを始めており、最初の検出時（検出スレッド）に受け取る
+        final DetectorWarmup warmup = getDetectorWarmup();
+        SwitchableFaceDetector faceDetector = new SwitchableFaceDetector(
+                new SwitchableFaceDetector.Factory() {
+                    @Override
+                    public Detector<Face> create(DetectionProfile profile) {
+                        return new WarmFaceDetector(context, warmup, profile);
+                    }
+                }, adaptProfile(mDetectionProfile));
+        mSwitchableDetectors.add(faceDetector);
+
+        Detector<Face> detector = regionDetection
+                ? new RegionFaceDetector(faceDetector) : faceDetector;
+
+        // プレビューとは別の（低い）解像度で検出する。解像度は端末の状態に応じて下げることもある
+        DecimatingFaceDetector decimatingDetector = new DecimatingFaceDetector(detector,
+                getDetectionWidth(), getDetectionHeight());
+        mDecimatingDetectors.add(decimatingDetector);
+        return decimatingDetector;
+    }
+
+    /**
+     * Switches the face detectors to the given profile, without restarting the camera source.
+     */
+    void setDetectionProfile(DetectionProfile profile) {
+        mDetectionProfile = profile;
+        DetectionProfile adapted = adaptProfile(profile);
+        for (SwitchableFaceDetector detector : mSwitchableDetectors) {
+            detector.setProfile(adapted);
+        }
+    }
+
+    /**
+     * Applies a throttling tier to the detection rate, resolution and detector mode.
+     */
+    private void setThrottlingTier(ThrottlingGovernor.Tier tier) {
+        mThrottlingTier = tier;
+        if (mAdaptiveDetector != null) {
+            mAdaptiveDetector.setMinIntervalMillis(tier.mMinDetectionIntervalMillis);
+        }
+        if (mParallelDetector != null) {
+            mParallelDetector.setMinIntervalMillis(tier.mMinDetectionIntervalMillis);
+        }
+        for (DecimatingFaceDetector detector : mDecimatingDetectors) {
+            detector.setDetectionSize(getDetectionWidth(), getDetectionHeight());
+        }
+        setDetectionProfile(mDetectionProfile);
+    }
+
+    ThrottlingGovernor getThrottlingGovernor() {
+        return mThrottlingGovernor;
+    }
+
+    DetectionProfile getDetectionProfile() {
+        return mDetectionProfile;
+    }
+
+    /**
+     * Adjusts a profile to the current throttling tier and to the detector chain selected by the
+     * intent extras.
+     */
+    private DetectionProfile adaptProfile(DetectionProfile profile) {
+        profile = profile.restrictTo(mThrottlingTier);
+        if (isRegionDetection() && profile.isTrackingEnabled()) {
+            // 顔の領域ごとに検出する場合、顔 ID は RegionFaceDetector が割り当てる
+            return profile.toBuilder().setTrackingEnabled(false).build();
+        }
+        return profile;
+    }
+
+    private boolean isRegionDetection() {
+        return getIntent().getBooleanExtra(EXTRA_REGION_DETECTION, false);
+    }
+
+    private DetectorWarmup getDetectorWarmup() {
+        return getFaceTrackerApplication().getDetectorWarmup();
+    }
+
+    private FaceTrackerApplication getFaceTrackerApplication() {
+        return (FaceTrackerApplication) getApplication();
+    }
+
+    /**
+     * Maximum width of the frames to detect in, from the intent extras and the throttling tier.
+     */
+    private int getDetectionWidth() {
+        int width = isDetectionDecimated()
+                ? getIntent().getIntExtra(EXTRA_DETECTION_WIDTH, 0) : Integer.MAX_VALUE;
+        return Math.min(width, mThrottlingTier.mMaxDetectionWidth);
+    }
+
+    private int getDetectionHeight() {
+        int height = isDetectionDecimated()
+                ? getIntent().getIntExtra(EXTRA_DETECTION_HEIGHT, 0) : Integer.MAX_VALUE;
+        return Math.min(height, mThrottlingTier.mMaxDetectionHeight);
+    }
+
+    private boolean isDetectionDecimated() {
+        return getIntent().getIntExtra(EXTRA_DETECTION_WIDTH, 0) > 0
+                && getIntent().getIntExtra(EXTRA_DETECTION_HEIGHT, 0) > 0;
+    }
+
+    /**
+     * Restarts the camera and the throttling governor.
      */
     @Override
     protected void onResume() {
         super.onResume();
+        mResumed = true;
 
         startCameraSource();
+        mThrottlingGovernor.start();
     }
 
     /**
-     * Stops the camera.
+     * Stops the camera and the throttling governor.
      */
     @Override
     protected void onPause() {
         super.onPause();
-        mPreview.stop();
+        mResumed = false;
+        mThrottlingGovernor.stop();
+        if (mFrameSource != null) {
+            mFrameSource.stop();
+        }
+        if (mDetectionRunning) {
+            mDetectionRunning = false;
+            getFaceTrackerApplication().onDetectionStopped();
+        }
     }
 
     /**
@@ -175,8 +511,70 @@ public final class FaceTrackerActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (mCameraSource != null) {
-            mCameraSource.release();
+        if (mCalibrationDetector != null) {
+            getFaceTrackerApplication().getCameraCalibration()
+                    .removeCallback(mCalibrationCallback);
+            mCalibrationDetector.release();
+            mCalibrationDetector = null;
+        }
+        if (mFrameSource != null) {
+            mFrameSource.release();
+            mFrameSource = null;
+        }
+        if (mFrameRecorder != null) {
+            if (mParallelDetector != null) {
+                mParallelDetector.setFrameRecorder(null);
+            } else {
+                mFrameAdmission.setFrameRecorder(null);
+            }
+            try {
+                mFrameRecorder.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Could not close frame recording.", e);
+            }
+            mFrameRecorder = null;
+        }
+        setOverlayRenderedOnSurface(false);
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putBoolean(STATE_RENDER_ON_SURFACE, mSurfaceRenderer != null);
+    }
+
+    /**
+     * Returns the frame admission stage of the current camera source, whose counters tell how
+     * many camera frames were dropped and how long processed frames waited, or null if the camera
+     * source has not been created or runs detectors in parallel.
+     */
+    FrameAdmissionDetector getFrameAdmission() {
+        return mFrameAdmission;
+    }
+
+    /**
+     * Returns the parallel detector of the current camera source, or null if the camera source has
+     * not been created or runs a single detector.
+     */
+    ParallelFaceDetector getParallelDetector() {
+        return mParallelDetector;
+    }
+
+    /**
+     * Switches drawing of the face overlay between the UI thread and a dedicated render thread,
+     * which draws into a transparent surface stacked above the camera preview.  May be called at
+     * any time while the activity is shown.
+     */
+    void setOverlayRenderedOnSurface(boolean onSurface) {
+        if (onSurface && mSurfaceRenderer == null) {
+            mSurfaceRenderer = new OverlaySurfaceRenderer(this);
+            mPreview.addView(mSurfaceRenderer);
+            mGraphicOverlay.setSurfaceRenderer(mSurfaceRenderer);
+        } else if (!onSurface && mSurfaceRenderer != null) {
+            mGraphicOverlay.setSurfaceRenderer(null);
+            mPreview.removeView(mSurfaceRenderer);
+            mSurfaceRenderer.release();
+            mSurfaceRenderer = null;
         }
     }
 
@@ -247,78 +645,20 @@ public final class FaceTrackerActivity extends AppCompatActivity {
             dlg.show();
         }
 
-        if (mCameraSource != null) {
+        if (mFrameSource != null) {
+            // カメラはカメラスレッドで起動されるので、ここではすぐに戻る
             try {
-                mPreview.start(mCameraSource, mGraphicOverlay);
+                mFrameSource.start();
+                if (!mDetectionRunning) {
+                    // 検出中はカメラの設定の計測結果を保存しない
+                    mDetectionRunning = true;
+                    getFaceTrackerApplication().onDetectionStarted();
+                }
             } catch (IOException e) {
-                mCameraSource.release();
-                mCameraSource = null;
+                Log.e(TAG, "Could not start frame source.", e);
+                mFrameSource.release();
+                mFrameSource = null;
             }
         }
     }
-
-    //==============================================================================================
-    // Graphic Face Tracker
-    //==============================================================================================
-
-    /**
-     * Factory for creating a face tracker to be associated with a new face.  The multiprocessor
-     * uses this factory to create face trackers as needed -- one for each individual.
-     */
-    private class GraphicFaceTrackerFactory implements MultiProcessor.Factory<Face> {
-        @Override
-        public Tracker<Face> create(Face face) { // 新しい顔を認識するたびに自動的に呼び出される
-            return new GraphicFaceTracker(mGraphicOverlay);
-        }
-    }
-
-    /**
-     * Face tracker for each detected individual. This maintains a face graphic within the app's
-     * associated face overlay.
-     */
-    private class GraphicFaceTracker extends Tracker<Face> {
-        private GraphicOverlay mOverlay;
-        private FaceGraphic mFaceGraphic;
-
-        GraphicFaceTracker(GraphicOverlay overlay) {
-            mOverlay = overlay;
-            mFaceGraphic = new FaceGraphic(overlay, FaceTrackerActivity.this);
-        }
-
-        /**
-         * Start tracking the detected face instance within the face overlay.
-         */
-        @Override
-        public void onNewItem(int faceId, Face item) {
-            mFaceGraphic.setId(faceId);
-        }
-
-        /**
-         * Update the position/characteristics of the face within the overlay.
-         */
-        @Override
-        public void onUpdate(FaceDetector.Detections<Face> detectionResults, Face face) {
-            mOverlay.add(mFaceGraphic);
-            mFaceGraphic.updateFace(face); // 認識した情報を画面上に描画する
-        }
-
-        /**
-         * Hide the graphic when the corresponding face was not detected.  This can happen for
-         * intermediate frames temporarily (e.g., if the face was momentarily blocked from
-         * view).
-         */
-        @Override
-        public void onMissing(FaceDetector.Detections<Face> detectionResults) {
-            mOverlay.remove(mFaceGraphic);
-        }
-
-        /**
-         * Called when the face is assumed to be gone for good. Remove the graphic annotation from
-         * the overlay.
-         */
-        @Override
-        public void onDone() {
-            mOverlay.remove(mFaceGraphic);
-        }
-    }
 }
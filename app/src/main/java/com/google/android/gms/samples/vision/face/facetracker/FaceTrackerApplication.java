@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.app.Application;
+import android.os.SystemClock;
+
+/**
+ * Application for the face tracker app, which starts warming up the face detector as soon as the
+ * process starts, before any activity is created.  It also holds the process-wide state which
+ * outlives the activities: the calibration of the camera configuration, and which detection
+ * workloads are running.
+ */
+public final class FaceTrackerApplication extends Application
+        implements CameraConfigNegotiator.WorkloadMonitor {
+    private DetectorWarmup mDetectorWarmup;
+    // カメラの設定の計測は、プロセスで1回だけ行う（アクティビティが作り直されても共有する）
+    private CameraConfigNegotiator.Calibration mCameraCalibration;
+
+    // 検出を行っているアクティビティの数と、検出を始めた回数
+    private int mRunningDetections;
+    private int mDetectionStartCount;
+
+    @Override
+    public void onCreate() {
+        long startMillis = SystemClock.elapsedRealtime();
+        super.onCreate();
+        mDetectorWarmup = new DetectorWarmup(this, startMillis);
+        mDetectorWarmup.start();
+    }
+
+    DetectorWarmup getDetectorWarmup() {
+        return mDetectorWarmup;
+    }
+
+    /**
+     * Returns the calibration of the front camera configuration, starting it on the first call.
+     * Later calls, e.g., from an activity recreated while the calibration runs, get the same
+     * calibration.  Must be called on the UI thread.
+     */
+    CameraConfigNegotiator.Calibration getCameraCalibration() {
+        if (mCameraCalibration == null) {
+            mCameraCalibration = new CameraConfigNegotiator(this, true)
+                    .calibrateInBackground(mDetectorWarmup, this);
+        }
+        return mCameraCalibration;
+    }
+
+    /**
+     * Notes that an activity has started feeding frames to a detector.
+     */
+    synchronized void onDetectionStarted() {
+        mRunningDetections++;
+        mDetectionStartCount++;
+    }
+
+    /**
+     * Notes that an activity has stopped feeding frames to a detector.
+     */
+    synchronized void onDetectionStopped() {
+        mRunningDetections--;
+    }
+
+    @Override
+    public synchronized boolean isDetectionRunning() {
+        return mRunningDetections > 0;
+    }
+
+    @Override
+    public synchronized int getDetectionStartCount() {
+        return mDetectionStartCount;
+    }
+}
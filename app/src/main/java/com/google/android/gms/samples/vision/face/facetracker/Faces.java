@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.graphics.PointF;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceState;
+import com.google.android.gms.vision.face.Face;
+import com.google.android.gms.vision.face.Landmark;
+
+import java.util.List;
+
+/**
+ * Helpers for {@link Face} instances: converting them to the platform-independent
+ * {@link FaceState}, and mapping faces which are detected in one image to the coordinate system of
+ * another, e.g., a crop or a downscaled copy of the camera frame.
+ */
+final class Faces {
+    private Faces() {
+    }
+
+    /**
+     * Copies the parts of a detected face which are drawn into {@code state}.  Slots for landmark
+     * types that were not detected are marked as not found.
+     */
+    static void copyState(Face face, FaceState state) {
+        PointF position = face.getPosition();
+        state.set(position.x, position.y, face.getWidth(), face.getHeight(),
+                face.getIsSmilingProbability());
+
+        // 拡張 for 文は Iterator を生成するため、インデックスでアクセスする
+        List<Landmark> landmarks = face.getLandmarks();
+        for (int i = 0, size = landmarks.size(); i < size; i++) {
+            Landmark landmark = landmarks.get(i);
+            PointF landmarkPosition = landmark.getPosition();
+            state.setLandmark(landmark.getType(), landmarkPosition.x, landmarkPosition.y);
+        }
+    }
+
+    /**
+     * Returns a copy of the face, and its landmarks, with every coordinate {@code p} replaced by
+     * {@code p * scale + offset}.
+     */
+    static Face transform(Face face, float scale, float offsetX, float offsetY) {
+        List<Landmark> landmarks = face.getLandmarks();
+        Landmark[] transformed = new Landmark[landmarks.size()];
+        for (int i = 0; i < transformed.length; i++) {
+            Landmark landmark = landmarks.get(i);
+            PointF position = landmark.getPosition();
+            transformed[i] = new Landmark(
+                    new PointF(position.x * scale + offsetX, position.y * scale + offsetY),
+                    landmark.getType());
+        }
+
+        PointF position = face.getPosition();
+        return new Face(face.getId(),
+                new PointF(position.x * scale + offsetX, position.y * scale + offsetY),
+                face.getWidth() * scale, face.getHeight() * scale,
+                face.getEulerY(), face.getEulerZ(), transformed,
+                face.getIsLeftEyeOpenProbability(), face.getIsRightEyeOpenProbability(),
+                face.getIsSmilingProbability());
+    }
+}
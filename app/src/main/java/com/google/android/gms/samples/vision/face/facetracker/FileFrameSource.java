@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.graphics.ImageFormat;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.samples.vision.face.facetracker.ui.camera.GraphicOverlay;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Frame source which replays NV21 frames recorded by {@link FrameFileWriter}, so that the
+ * detection pipeline can be driven reproducibly without a camera.<p>
+ *
+ * The file is read through memory mapping, in windows, and each frame is handed to the detector
+ * as a slice of the mapping, with its recorded timestamp.  Frames are replayed either in real
+ * time, paced by their timestamps, or as fast as possible; in the latter mode, no frame is
+ * dropped: with a {@link FrameAdmissionDetector}, each frame waits for the previous one to be
+ * processed, and with a {@link ParallelFaceDetector}, for the previous one to be taken by a
+ * worker, so that the workers still detect in parallel.  Replay runs once, on its own thread,
+ * and logs the achieved frame rate at the end.
+ */
+final class FileFrameSource implements FrameSource {
+    private static final String TAG = "FileFrameSource";
+
+    // 一度にマップする範囲
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private final File mFile;
+    private final Detector<?> mDetector;
+    private final GraphicOverlay mOverlay;
+    private final boolean mRealTime;
+
+    private Thread mThread;
+    private volatile boolean mRunning;
+    private volatile long mReplayedFrames;
+
+    /**
+     * @param detector the detector chain, with its processor, which receives the frames
+     * @param realTime true to pace the frames by their timestamps, false to replay them as fast
+     *                 as the pipeline processes them
+     */
+    FileFrameSource(File file, Detector<?> detector, GraphicOverlay overlay, boolean realTime) {
+        mFile = file;
+        mDetector = detector;
+        mOverlay = overlay;
+        mRealTime = realTime;
+    }
+
+    /**
+     * Reads the file header, sets the overlay's camera info accordingly, and starts the replay.
+     */
+    @Override
+    public void start() throws IOException {
+        if (mThread != null) {
+            return;
+        }
+        final RandomAccessFile file = new RandomAccessFile(mFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    FrameFileWriter.HEADER_SIZE);
+            if (header.getInt() != FrameFileWriter.MAGIC
+                    || header.getInt() != FrameFileWriter.VERSION) {
+                throw new IOException("Not a frame recording: " + mFile);
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            int rotation = header.getInt();
+            int facing = header.getInt();
+
+            // オーバーレイには、正立させた画像の大きさを設定する
+            boolean swap = (rotation == Frame.ROTATION_90) || (rotation == Frame.ROTATION_270);
+            mOverlay.setCameraInfo(swap ? height : width, swap ? width : height, facing);
+            mOverlay.clear();
+
+            mRunning = true;
+            mThread = new Thread(new ReplayRunnable(file, width, height, rotation),
+                    "FrameReplay");
+            mThread.start();
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void stop() {
+        mRunning = false;
+        Thread thread = mThread;
+        mThread = null;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void release() {
+        stop();
+        mDetector.release();
+    }
+
+    long getReplayedFrames() {
+        return mReplayedFrames;
+    }
+
+    private class ReplayRunnable implements Runnable {
+        private final RandomAccessFile mRandomAccessFile;
+        private final int mWidth;
+        private final int mHeight;
+        private final int mRotation;
+
+        private MappedByteBuffer mWindow;
+        private long mWindowStart;
+
+        ReplayRunnable(RandomAccessFile file, int width, int height, int rotation) {
+            mRandomAccessFile = file;
+            mWidth = width;
+            mHeight = height;
+            mRotation = rotation;
+        }
+
+        @Override
+        public void run() {
+            long start = SystemClock.elapsedRealtime();
+            long count = 0;
+            try {
+                FileChannel channel = mRandomAccessFile.getChannel();
+                long length = channel.size();
+                long position = FrameFileWriter.HEADER_SIZE;
+                long firstTimestampMillis = -1;
+
+                while (mRunning && position + FrameFileWriter.RECORD_HEADER_SIZE <= length) {
+                    map(channel, position, FrameFileWriter.RECORD_HEADER_SIZE, length);
+                    int offset = (int) (position - mWindowStart);
+                    long timestampMillis = mWindow.getLong(offset);
+                    int size = mWindow.getInt(offset + 8);
+                    long dataPosition = position + FrameFileWriter.RECORD_HEADER_SIZE;
+                    if (dataPosition + size > length) {
+                        Log.w(TAG, "Recording truncated after " + count + " frames.");
+                        break;
+                    }
+                    map(channel, dataPosition, size, length);
+
+                    // 記録された時刻の間隔どおりに再生する
+                    if (firstTimestampMillis < 0) {
+                        firstTimestampMillis = timestampMillis;
+                    } else if (mRealTime) {
+                        long delay = (timestampMillis - firstTimestampMillis)
+                                - (SystemClock.elapsedRealtime() - start);
+                        if (delay > 0) {
+                            Thread.sleep(delay);
+                        }
+                    }
+
+                    ByteBuffer data = mWindow.duplicate();
+                    data.position((int) (dataPosition - mWindowStart));
+                    data.limit(data.position() + size);
+                    Frame frame = new Frame.Builder()
+                            .setImageData(data.slice(), mWidth, mHeight, ImageFormat.NV21)
+                            .setId((int) count)
+                            .setTimestampMillis(timestampMillis)
+                            .setRotation(mRotation)
+                            .build();
+                    mDetector.receiveFrame(frame);
+                    if (!mRealTime && mDetector instanceof FrameAdmissionDetector) {
+                        ((FrameAdmissionDetector) mDetector).awaitIdle();
+                    } else if (!mRealTime && mDetector instanceof ParallelFaceDetector) {
+                        ((ParallelFaceDetector) mDetector).awaitAdmitted();
+                    }
+
+                    count++;
+                    mReplayedFrames = count;
+                    position = dataPosition + size;
+                }
+            } catch (InterruptedException | ClosedByInterruptException e) {
+                Log.d(TAG, "Replay stopped.");
+            } catch (IOException e) {
+                Log.e(TAG, "Could not read recording " + mFile, e);
+            } finally {
+                try {
+                    mRandomAccessFile.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Could not close recording.", e);
+                }
+            }
+
+            long elapsed = Math.max(SystemClock.elapsedRealtime() - start, 1);
+            Log.i(TAG, "Replayed " + count + " frames in " + elapsed + " ms ("
+                    + (count * 1000.0f / elapsed) + " fps)");
+        }
+
+        /**
+         * Makes sure the window maps the given range of the file, remapping if necessary.
+         */
+        private void map(FileChannel channel, long position, int size, long length)
+                throws IOException {
+            if (mWindow != null && position >= mWindowStart
+                    && position + size <= mWindowStart + mWindow.capacity()) {
+                return;
+            }
+            long windowSize = Math.min(Math.max(WINDOW_SIZE, size), length - position);
+            mWindow = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+            mWindowStart = position;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.graphics.ImageFormat;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Admission stage in front of the face detector, which decouples the camera from detection.  Each
+ * frame received from the camera is copied into the single pending slot, replacing (and dropping)
+ * a frame which is still waiting there; a dedicated thread takes the latest pending frame and runs
+ * the rest of the pipeline on it.  Thus the camera is never held up by detection, the detector
+ * always works on the newest frame, and every dropped frame is accounted for.<p>
+ *
+ * Frames are expected in NV21 format, as delivered by
+ * {@link com.google.android.gms.vision.CameraSource}.  The processor receiving the detections is
+ * set on this detector, and is called on the admission thread.
+ */
+class FrameAdmissionDetector extends Detector<Face> {
+    private static final String TAG = "FrameAdmission";
+    private static final float SMOOTHING = 0.1f;
+
+    private final Detector<Face> mDelegate;
+
+    private final Object mLock = new Object();
+    private Thread mThread;
+    private boolean mActive = true;
+
+    // 待機中のフレーム（mLock で保護）。処理中のフレームとはバッファを入れ替えて使う
+    private byte[] mPendingData = new byte[0];
+    private byte[] mProcessingData = new byte[0];
+    private boolean mHasPending;
+    // 検出スレッドがフレームを処理している間 true
+    private boolean mBusy;
+    private int mPendingSize;
+    private int mPendingWidth;
+    private int mPendingHeight;
+    private int mPendingId;
+    private long mPendingTimestampMillis;
+    private int mPendingRotation;
+    private long mPendingAdmittedMillis;
+
+    private volatile Runnable mFrameListener;
+    private volatile AsyncFrameRecorder mFrameRecorder;
+
+    private volatile long mAdmittedFrames;
+    private volatile long mDroppedFrames;
+    private volatile long mProcessedFrames;
+    private volatile long mLastQueueAgeMillis;
+    private volatile float mMeanQueueAgeMillis;
+
+    FrameAdmissionDetector(Detector<Face> delegate) {
+        mDelegate = delegate;
+    }
+
+    /**
+     * Sets a listener which is run, on the thread delivering camera frames, whenever a frame is
+     * received and before it is admitted, e.g., to detect the arrival of the first preview frame.
+     */
+    void setFrameListener(Runnable listener) {
+        mFrameListener = listener;
+    }
+
+    /**
+     * Sets a recorder which records every received frame, or null to stop recording.  The
+     * recorder is not closed by this detector; a frame being received concurrently may still be
+     * passed to the previous recorder, which ignores it once closed.
+     */
+    void setFrameRecorder(AsyncFrameRecorder recorder) {
+        mFrameRecorder = recorder;
+    }
+
+    /**
+     * Waits until the pending frame, if any, has been processed, e.g., so that a source which
+     * can produce frames faster than they are detected does not have them dropped.
+     */
+    void awaitIdle() throws InterruptedException {
+        synchronized (mLock) {
+            while (mActive && (mHasPending || mBusy)) {
+                mLock.wait();
+            }
+        }
+    }
+
+    /**
+     * Admits a camera frame, replacing the pending frame if the previous one has not been picked
+     * up yet.  Returns without waiting for detection.
+     */
+    @Override
+    public void receiveFrame(Frame frame) {
+        Runnable listener = mFrameListener;
+        if (listener != null) {
+            listener.run();
+        }
+
+        Frame.Metadata metadata = frame.getMetadata();
+        ByteBuffer source = frame.getGrayscaleImageData().duplicate();
+        source.rewind();
+
+        // 記録は別のスレッドで書き込むので、ここではコピーするだけで mLock も保持しない
+        AsyncFrameRecorder recorder = mFrameRecorder;
+        if (recorder != null) {
+            recorder.record(metadata, source);
+        }
+
+        synchronized (mLock) {
+            if (!mActive) {
+                return;
+            }
+            if (mThread == null) {
+                mThread = new Thread(new AdmissionRunnable(), "FrameAdmission");
+                mThread.start();
+            }
+
+            if (mHasPending) {
+                mDroppedFrames++;
+            }
+            int size = source.remaining();
+            if (mPendingData.length < size) {
+                mPendingData = new byte[size];
+            }
+            source.get(mPendingData, 0, size);
+            mPendingSize = size;
+            mPendingWidth = metadata.getWidth();
+            mPendingHeight = metadata.getHeight();
+            mPendingId = metadata.getId();
+            mPendingTimestampMillis = metadata.getTimestampMillis();
+            mPendingRotation = metadata.getRotation();
+            mPendingAdmittedMillis = SystemClock.elapsedRealtime();
+            mHasPending = true;
+            mAdmittedFrames++;
+            mLock.notifyAll();
+        }
+    }
+
+    @Override
+    public SparseArray<Face> detect(Frame frame) {
+        return mDelegate.detect(frame);
+    }
+
+    @Override
+    public boolean isOperational() {
+        return mDelegate.isOperational();
+    }
+
+    @Override
+    public boolean setFocus(int id) {
+        return mDelegate.setFocus(id);
+    }
+
+    /**
+     * Stops the admission thread, dropping a pending frame, and releases the underlying detector.
+     */
+    @Override
+    public void release() {
+        Thread thread;
+        synchronized (mLock) {
+            mActive = false;
+            mHasPending = false;
+            thread = mThread;
+            mThread = null;
+            mLock.notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Log.d(TAG, "Frame admission thread interrupted on release.");
+                Thread.currentThread().interrupt();
+            }
+        }
+        mDelegate.release();
+        super.release();
+    }
+
+    /**
+     * Number of frames received from the camera.
+     */
+    long getAdmittedFrames() {
+        return mAdmittedFrames;
+    }
+
+    /**
+     * Number of frames replaced by a newer frame before detection could pick them up.
+     */
+    long getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    /**
+     * Number of frames passed on to detection.
+     */
+    long getProcessedFrames() {
+        return mProcessedFrames;
+    }
+
+    /**
+     * Time the most recently processed frame waited in the pending slot.
+     */
+    long getLastQueueAgeMillis() {
+        return mLastQueueAgeMillis;
+    }
+
+    /**
+     * Running average of the time processed frames waited in the pending slot.
+     */
+    float getMeanQueueAgeMillis() {
+        return mMeanQueueAgeMillis;
+    }
+
+    /**
+     * Fraction of admitted frames which were dropped.
+     */
+    float getDropRate() {
+        long admitted = mAdmittedFrames;
+        return (admitted == 0) ? 0.0f : (float) mDroppedFrames / admitted;
+    }
+
+    /**
+     * Takes the latest pending frame and runs detection on it, until released.
+     */
+    private class AdmissionRunnable implements Runnable {
+        @Override
+        public void run() {
+            while (true) {
+                int size;
+                int width;
+                int height;
+                int id;
+                long timestampMillis;
+                int rotation;
+                synchronized (mLock) {
+                    while (mActive && !mHasPending) {
+                        try {
+                            mLock.wait();
+                        } catch (InterruptedException e) {
+                            Log.d(TAG, "Frame admission loop terminated.", e);
+                            return;
+                        }
+                    }
+                    if (!mActive) {
+                        return;
+                    }
+
+                    // バッファを入れ替えて、待機中のフレームを取り出す
+                    byte[] data = mProcessingData;
+                    mProcessingData = mPendingData;
+                    mPendingData = data;
+                    mHasPending = false;
+                    mBusy = true;
+                    size = mPendingSize;
+                    width = mPendingWidth;
+                    height = mPendingHeight;
+                    id = mPendingId;
+                    timestampMillis = mPendingTimestampMillis;
+                    rotation = mPendingRotation;
+
+                    long age = SystemClock.elapsedRealtime() - mPendingAdmittedMillis;
+                    mLastQueueAgeMillis = age;
+                    mMeanQueueAgeMillis += SMOOTHING * (age - mMeanQueueAgeMillis);
+                }
+
+                Frame frame = new Frame.Builder()
+                        .setImageData(ByteBuffer.wrap(mProcessingData, 0, size), width, height,
+                                ImageFormat.NV21)
+                        .setId(id)
+                        .setTimestampMillis(timestampMillis)
+                        .setRotation(rotation)
+                        .build();
+                try {
+                    FrameAdmissionDetector.super.receiveFrame(frame);
+                } catch (Throwable t) {
+                    Log.e(TAG, "Exception thrown from receiver.", t);
+                }
+                mProcessedFrames++;
+                synchronized (mLock) {
+                    mBusy = false;
+                    mLock.notifyAll();
+                }
+            }
+        }
+    }
+}
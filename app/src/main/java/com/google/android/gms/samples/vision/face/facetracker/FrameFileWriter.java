@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import com.google.android.gms.vision.Frame;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes NV21 frames, with their timestamps, to a file which {@link FileFrameSource} can replay.
+ * The format, all big-endian, is:
+ * <pre>
+ * header: int magic ("NV21"), int version, int width, int height, int rotation, int facing
+ * record: long timestampMillis, int size, byte[size] NV21 data
+ * </pre>
+ * The header is written with the first frame; all frames of a file must have the same size and
+ * rotation.  Not thread safe; frames from the camera are recorded through an
+ * {@link AsyncFrameRecorder}, which writes on its own thread.
+ */
+final class FrameFileWriter implements Closeable {
+    static final int MAGIC = 0x4e563231;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 6 * 4;
+    static final int RECORD_HEADER_SIZE = 8 + 4;
+
+    private final DataOutputStream mOutput;
+    private final int mFacing;
+    private boolean mHeaderWritten;
+    private int mWidth;
+    private int mHeight;
+    private long mFrameCount;
+
+    /**
+     * @param facing the {@link com.google.android.gms.vision.CameraSource} facing of the camera
+     *               the frames come from
+     */
+    FrameFileWriter(File file, int facing) throws IOException {
+        mFacing = facing;
+        mOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file),
+                64 * 1024));
+    }
+
+    /**
+     * Appends one frame.
+     *
+     * @param data NV21 data of the frame, of which the first {@code size} bytes are written
+     */
+    void write(Frame.Metadata metadata, byte[] data, int size) throws IOException {
+        if (!mHeaderWritten) {
+            mWidth = metadata.getWidth();
+            mHeight = metadata.getHeight();
+            mOutput.writeInt(MAGIC);
+            mOutput.writeInt(VERSION);
+            mOutput.writeInt(mWidth);
+            mOutput.writeInt(mHeight);
+            mOutput.writeInt(metadata.getRotation());
+            mOutput.writeInt(mFacing);
+            mHeaderWritten = true;
+        } else if (metadata.getWidth() != mWidth || metadata.getHeight() != mHeight) {
+            throw new IOException("Frame size changed from " + mWidth + "x" + mHeight);
+        }
+        mOutput.writeLong(metadata.getTimestampMillis());
+        mOutput.writeInt(size);
+        mOutput.write(data, 0, size);
+        mFrameCount++;
+    }
+
+    long getFrameCount() {
+        return mFrameCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mOutput.close();
+    }
+}
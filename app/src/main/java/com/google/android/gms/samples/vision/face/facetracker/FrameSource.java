@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import java.io.IOException;
+
+/**
+ * Source of the frames which drive the detection pipeline, i.e., the detector chain with its
+ * overlay processor.  The pipeline is the same whichever source feeds it: the live camera
+ * ({@link CameraFrameSource}) or a recording ({@link FileFrameSource}).<p>
+ *
+ * Sources are started and stopped on the UI thread, following the activity lifecycle.
+ */
+interface FrameSource {
+    /**
+     * Starts delivering frames to the pipeline, and sets the overlay's camera info to match them.
+     */
+    void start() throws IOException;
+
+    /**
+     * Stops delivering frames.  The source may be started again.
+     */
+    void stop();
+
+    /**
+     * Stops delivering frames and releases the source and the pipeline it feeds.
+     */
+    void release();
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.os.Handler;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.ThrottlingGovernor;
+
+/**
+ * Runs the {@link ThrottlingGovernor}'s poll on the thread of an Android {@link Handler}.
+ */
+final class HandlerScheduler implements ThrottlingGovernor.Scheduler {
+    private final Handler mHandler;
+
+    HandlerScheduler(Handler handler) {
+        mHandler = handler;
+    }
+
+    @Override
+    public void schedule(Runnable task, long delayMillis) {
+        mHandler.postDelayed(task, delayMillis);
+    }
+
+    @Override
+    public void cancel(Runnable task) {
+        mHandler.removeCallbacks(task);
+    }
+}
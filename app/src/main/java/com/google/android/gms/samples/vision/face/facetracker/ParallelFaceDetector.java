@@ -0,0 +1,423 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.graphics.ImageFormat;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Face detector which runs several underlying detector instances in parallel, each on its own
+ * thread, on successive camera frames.<p>
+ *
+ * Like {@link FrameAdmissionDetector}, each received frame is copied into a single pending slot,
+ * replacing (and dropping) a frame which no worker has picked up yet.  Each idle worker takes the
+ * pending frame and runs its own detector on it.  Results are passed to the processor strictly in
+ * the order the frames were taken, i.e., in timestamp order, regardless of which worker finishes
+ * first; at most one frame per worker is in flight, so a worker which is done waits until earlier
+ * frames have been delivered before it takes another frame.<p>
+ *
+ * Each instance tracks faces only in the frames it sees, so its face IDs are not used; instead,
+ * IDs are assigned by a {@link FaceIdStitcher} as the results are delivered, which keeps them
+ * stable for the processor.  Frames are expected in NV21 format, as delivered by
+ * {@link com.google.android.gms.vision.CameraSource}.<p>
+ *
+ * The detection rate can be capped with {@link #setMinIntervalMillis(long)}, like
+ * {@link AdaptiveFaceDetector#setMinIntervalMillis(long)} on the single-detector path: frames
+ * which arrive sooner than that after the last admitted frame are dropped before they are copied.
+ */
+class ParallelFaceDetector extends Detector<Face> {
+    private static final String TAG = "ParallelFaceDetector";
+
+    private final Detector<Face>[] mDetectors;
+    private final Thread[] mThreads;
+    private final FaceIdStitcher mStitcher = new FaceIdStitcher();
+    private volatile Processor<Face> mProcessor;
+
+    private final Object mLock = new Object();
+    private boolean mStarted;
+    private boolean mActive = true;
+
+    // 待機中のフレーム（mLock で保護）
+    private byte[] mPendingData = new byte[0];
+    private boolean mHasPending;
+    private int mPendingSize;
+    private int mPendingWidth;
+    private int mPendingHeight;
+    private int mPendingId;
+    private long mPendingTimestampMillis;
+    private int mPendingRotation;
+
+    // 処理中・処理済みのフレーム（mLock で保護）。順番 s のフレームの結果は s % ワーカー数 に置く
+    private long mNextSequence;
+    private long mNextDelivery;
+    private final SparseArray<Face>[] mResults;
+    private final Frame.Metadata[] mResultMetadata;
+    // 検出直後に（検出器のロックを保持したまま）調べた、検出器が使えるかどうか
+    private final boolean[] mResultOperational;
+    private final boolean[] mResultReady;
+
+    // 結果を順番に渡すためのロック。プロセッサの呼び出し中も保持する
+    private final Object mDeliveryLock = new Object();
+
+    private volatile Runnable mFrameListener;
+    private volatile AsyncFrameRecorder mFrameRecorder;
+
+    // 検出レートの上限（フレームを受け入れる最短間隔）。0 は上限なし
+    private volatile long mMinIntervalMillis;
+    // 最後にフレームを受け入れた時刻（mLock で保護）
+    private long mLastAdmittedMillis = -1;
+
+    private volatile long mAdmittedFrames;
+    private volatile long mDroppedFrames;
+    private volatile long mThrottledFrames;
+    private volatile long mProcessedFrames;
+
+    /**
+     * @param detectors the detector instances, one per worker thread; each is used by its worker
+     *                  only, and released with this detector
+     */
+    @SuppressWarnings("unchecked")
+    ParallelFaceDetector(Detector<Face>[] detectors) {
+        int count = detectors.length;
+        mDetectors = detectors.clone();
+        mThreads = new Thread[count];
+        mResults = (SparseArray<Face>[]) new SparseArray[count];
+        mResultMetadata = new Frame.Metadata[count];
+        mResultOperational = new boolean[count];
+        mResultReady = new boolean[count];
+    }
+
+    /**
+     * Number of detector instances, i.e., the maximum number of frames processed in parallel.
+     */
+    int getDetectorCount() {
+        return mDetectors.length;
+    }
+
+    @Override
+    public void setProcessor(Processor<Face> processor) {
+        mProcessor = processor;
+        super.setProcessor(processor);
+    }
+
+    /**
+     * Sets a listener which is run, on the thread delivering camera frames, whenever a frame is
+     * received and before it is admitted, e.g., to detect the arrival of the first preview frame.
+     */
+    void setFrameListener(Runnable listener) {
+        mFrameListener = listener;
+    }
+
+    /**
+     * Sets a recorder which records every received frame, or null to stop recording, like
+     * {@link FrameAdmissionDetector#setFrameRecorder}.  The recorder is not closed by this
+     * detector.
+     */
+    void setFrameRecorder(AsyncFrameRecorder recorder) {
+        mFrameRecorder = recorder;
+    }
+
+    /**
+     * Sets the shortest time between two admitted frames, i.e., caps the detection rate.  0 means
+     * no cap.
+     */
+    void setMinIntervalMillis(long minIntervalMillis) {
+        mMinIntervalMillis = minIntervalMillis;
+    }
+
+    /**
+     * Admits a camera frame, replacing the pending frame if no worker has picked it up yet.
+     * Returns without waiting for detection.
+     */
+    @Override
+    public void receiveFrame(Frame frame) {
+        Runnable listener = mFrameListener;
+        if (listener != null) {
+            listener.run();
+        }
+
+        Frame.Metadata metadata = frame.getMetadata();
+        ByteBuffer source = frame.getGrayscaleImageData().duplicate();
+        source.rewind();
+
+        // 記録は別のスレッドで書き込むので、ここではコピーするだけで mLock も保持しない
+        AsyncFrameRecorder recorder = mFrameRecorder;
+        if (recorder != null) {
+            recorder.record(metadata, source);
+        }
+
+        synchronized (mLock) {
+            if (!mActive) {
+                return;
+            }
+            long now = SystemClock.uptimeMillis();
+            long minInterval = mMinIntervalMillis;
+            if (minInterval > 0 && mLastAdmittedMillis >= 0
+                    && now - mLastAdmittedMillis < minInterval) {
+                mThrottledFrames++;
+                return;
+            }
+            mLastAdmittedMillis = now;
+            if (!mStarted) {
+                for (int i = 0; i < mThreads.length; i++) {
+                    mThreads[i] = new Thread(new WorkerRunnable(mDetectors[i]),
+                            "FaceDetector-" + i);
+                    mThreads[i].start();
+                }
+                mStarted = true;
+            }
+
+            if (mHasPending) {
+                mDroppedFrames++;
+            }
+            int size = source.remaining();
+            if (mPendingData.length < size) {
+                mPendingData = new byte[size];
+            }
+            source.get(mPendingData, 0, size);
+            mPendingSize = size;
+            mPendingWidth = metadata.getWidth();
+            mPendingHeight = metadata.getHeight();
+            mPendingId = metadata.getId();
+            mPendingTimestampMillis = metadata.getTimestampMillis();
+            mPendingRotation = metadata.getRotation();
+            mHasPending = true;
+            mAdmittedFrames++;
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until a worker has taken the pending frame, if any, e.g., so that a source which can
+     * produce frames faster than they are detected does not have them dropped, while the workers
+     * still detect in parallel.
+     */
+    void awaitAdmitted() throws InterruptedException {
+        synchronized (mLock) {
+            while (mActive && mHasPending) {
+                mLock.wait();
+            }
+        }
+    }
+
+    /**
+     * Detects faces synchronously with the first detector instance, which is not used by its
+     * worker meanwhile.  Face IDs are those of that instance.
+     */
+    @Override
+    public SparseArray<Face> detect(Frame frame) {
+        Detector<Face> detector = mDetectors[0];
+        synchronized (detector) {
+            return detector.detect(frame);
+        }
+    }
+
+    /**
+     * Returns true if all detector instances are operational.  Each instance is queried while no
+     * worker is using it.
+     */
+    @Override
+    public boolean isOperational() {
+        for (Detector<Face> detector : mDetectors) {
+            synchronized (detector) {
+                if (!detector.isOperational()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the worker threads, dropping pending and undelivered frames, and releases the
+     * detector instances.
+     */
+    @Override
+    public void release() {
+        synchronized (mLock) {
+            mActive = false;
+            mHasPending = false;
+            mLock.notifyAll();
+        }
+        for (Thread thread : mThreads) {
+            if (thread == null) {
+                continue;
+            }
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Log.d(TAG, "Detector thread interrupted on release.");
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Detector<Face> detector : mDetectors) {
+            detector.release();
+        }
+        super.release();
+    }
+
+    long getAdmittedFrames() {
+        return mAdmittedFrames;
+    }
+
+    long getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    /**
+     * Number of frames not admitted because of the cap set by {@link #setMinIntervalMillis}.
+     */
+    long getThrottledFrames() {
+        return mThrottledFrames;
+    }
+
+    /**
+     * Number of frames whose results were delivered to the processor.
+     */
+    long getProcessedFrames() {
+        return mProcessedFrames;
+    }
+
+    /**
+     * Passes on the finished results, in order, until the next frame in order is not finished
+     * yet.  Called by a worker after finishing a frame.
+     */
+    private void deliverResults() {
+        synchronized (mDeliveryLock) {
+            while (true) {
+                SparseArray<Face> faces;
+                Frame.Metadata metadata;
+                boolean operational;
+                synchronized (mLock) {
+                    int slot = (int) (mNextDelivery % mResults.length);
+                    if (!mActive || !mResultReady[slot]) {
+                        return;
+                    }
+                    faces = mResults[slot];
+                    metadata = mResultMetadata[slot];
+                    operational = mResultOperational[slot];
+                    mResults[slot] = null;
+                    mResultMetadata[slot] = null;
+                    mResultReady[slot] = false;
+                    mNextDelivery++;
+                    // 結果を渡し終えるのを待っているワーカーを起こす
+                    mLock.notifyAll();
+                }
+
+                // 検出器ごとの ID ではなく、位置の重なりから ID を振り直す
+                SparseArray<Face> stitched = new SparseArray<>(faces.size());
+                mStitcher.beginFrame();
+                for (int i = 0, size = faces.size(); i < size; i++) {
+                    Face face = faces.valueAt(i);
+                    stitched.put(mStitcher.assign(face), face);
+                }
+                mStitcher.endFrame();
+
+                Processor<Face> processor = mProcessor;
+                if (processor != null) {
+                    try {
+                        processor.receiveDetections(
+                                new Detections<>(stitched, metadata, operational));
+                    } catch (Throwable t) {
+                        Log.e(TAG, "Exception thrown from receiver.", t);
+                    }
+                }
+                mProcessedFrames++;
+            }
+        }
+    }
+
+    /**
+     * Takes pending frames and runs its own detector instance on them, until released.
+     */
+    private class WorkerRunnable implements Runnable {
+        private final Detector<Face> mDetector;
+        private byte[] mData = new byte[0];
+
+        WorkerRunnable(Detector<Face> detector) {
+            mDetector = detector;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                long sequence;
+                Frame frame;
+                synchronized (mLock) {
+                    // 同時に処理するフレームは、ワーカー数までとする
+                    while (mActive && (!mHasPending
+                            || mNextSequence - mNextDelivery >= mResults.length)) {
+                        try {
+                            mLock.wait();
+                        } catch (InterruptedException e) {
+                            Log.d(TAG, "Detector loop terminated.", e);
+                            return;
+                        }
+                    }
+                    if (!mActive) {
+                        return;
+                    }
+
+                    // バッファを入れ替えて、待機中のフレームを取り出す
+                    byte[] data = mData;
+                    mData = mPendingData;
+                    mPendingData = data;
+                    mHasPending = false;
+                    sequence = mNextSequence++;
+                    // awaitAdmitted で待っているスレッドを起こす
+                    mLock.notifyAll();
+                    frame = new Frame.Builder()
+                            .setImageData(ByteBuffer.wrap(mData, 0, mPendingSize),
+                                    mPendingWidth, mPendingHeight, ImageFormat.NV21)
+                            .setId(mPendingId)
+                            .setTimestampMillis(mPendingTimestampMillis)
+                            .setRotation(mPendingRotation)
+                            .build();
+                }
+
+                SparseArray<Face> faces;
+                boolean operational = false;
+                try {
+                    synchronized (mDetector) {
+                        faces = mDetector.detect(frame);
+                        // 検出器の切り替え中に、解放されつつある検出器に問い合わせないよう、ここで調べる
+                        operational = mDetector.isOperational();
+                    }
+                } catch (Throwable t) {
+                    Log.e(TAG, "Exception thrown from detector.", t);
+                    faces = new SparseArray<>();
+                }
+
+                synchronized (mLock) {
+                    int slot = (int) (sequence % mResults.length);
+                    mResults[slot] = faces;
+                    mResultMetadata[slot] = frame.getMetadata();
+                    mResultOperational[slot] = operational;
+                    mResultReady[slot] = true;
+                }
+                deliverResults();
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.graphics.ImageFormat;
+import android.graphics.PointF;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Face detector which, once faces are known, only runs the underlying detector on padded regions
+ * around them instead of on the whole frame.  Every {@link #DEFAULT_FULL_FRAME_INTERVAL} frames
+ * (and whenever no faces are known) the whole frame is searched, to pick up newcomers.<p>
+ *
+ * Faces found in a region are mapped back to full-frame coordinates.  Because the underlying
+ * detector sees a different image on every call, its face IDs are not used; instead, IDs are
+ * assigned by a {@link FaceIdStitcher}, which keeps them stable for as long as a face is followed.
+ * The underlying detector is therefore best built with tracking disabled.<p>
+ *
+ * Frames are expected in NV21 format, as delivered by
+ * {@link com.google.android.gms.vision.CameraSource}.  Only the luma plane is cropped; the crop is
+ * handed to the detector with neutral chroma.
+ */
+class RegionFaceDetector extends Detector<Face> {
+    static final int DEFAULT_FULL_FRAME_INTERVAL = 10;
+
+    // 顔の大きさに対して、上下左右それぞれに加える余白の割合
+    private static final float PADDING = 0.5f;
+    // 領域がこれより多い場合は、フレーム全体を検出する
+    private static final int MAX_REGIONS = 4;
+
+    private final Detector<Face> mDelegate;
+    private final int mFullFrameInterval;
+    private final FaceIdStitcher mStitcher = new FaceIdStitcher();
+
+    // 直前のフレームで検出した顔の位置（フレーム全体の正立座標、left, top, right, bottom）
+    private float[] mKnownFaces = new float[MAX_REGIONS * 4];
+    private int mKnownFaceCount;
+    private int mFramesSinceFullDetection;
+
+    // 切り出し領域（正立座標）と、切り出した画像のバッファ
+    private final int[] mRegions = new int[MAX_REGIONS * 4];
+    private byte[] mCropBuffer = new byte[0];
+
+    RegionFaceDetector(Detector<Face> delegate) {
+        this(delegate, DEFAULT_FULL_FRAME_INTERVAL);
+    }
+
+    RegionFaceDetector(Detector<Face> delegate, int fullFrameInterval) {
+        mDelegate = delegate;
+        mFullFrameInterval = fullFrameInterval;
+    }
+
+    @Override
+    public SparseArray<Face> detect(Frame frame) {
+        Frame.Metadata metadata = frame.getMetadata();
+        int rotation = metadata.getRotation();
+        boolean swap = (rotation == Frame.ROTATION_90) || (rotation == Frame.ROTATION_270);
+        int uprightWidth = swap ? metadata.getHeight() : metadata.getWidth();
+        int uprightHeight = swap ? metadata.getWidth() : metadata.getHeight();
+
+        mStitcher.beginFrame();
+        SparseArray<Face> results = new SparseArray<>();
+
+        int regionCount = (mFramesSinceFullDetection + 1 >= mFullFrameInterval)
+                ? 0 : computeRegions(uprightWidth, uprightHeight);
+        if (regionCount == 0) {
+            mFramesSinceFullDetection = 0;
+            SparseArray<Face> faces = mDelegate.detect(frame);
+            for (int i = 0, size = faces.size(); i < size; i++) {
+                Face face = faces.valueAt(i);
+                results.put(mStitcher.assign(face), face);
+            }
+        } else {
+            mFramesSinceFullDetection++;
+            for (int r = 0; r < regionCount; r++) {
+                detectRegion(frame, r, results);
+            }
+        }
+
+        mStitcher.endFrame();
+        rememberFaces(results);
+        return results;
+    }
+
+    @Override
+    public boolean isOperational() {
+        return mDelegate.isOperational();
+    }
+
+    @Override
+    public boolean setFocus(int id) {
+        return mDelegate.setFocus(id);
+    }
+
+    @Override
+    public void release() {
+        mDelegate.release();
+        super.release();
+    }
+
+    /**
+     * Computes padded, merged regions around the known faces in upright frame coordinates.
+     *
+     * @return the number of regions, or 0 if the whole frame should be searched
+     */
+    private int computeRegions(int uprightWidth, int uprightHeight) {
+        if (mKnownFaceCount == 0 || mKnownFaceCount > MAX_REGIONS) {
+            return 0;
+        }
+
+        int count = 0;
+        for (int i = 0; i < mKnownFaceCount; i++) {
+            float left = mKnownFaces[i * 4];
+            float top = mKnownFaces[i * 4 + 1];
+            float right = mKnownFaces[i * 4 + 2];
+            float bottom = mKnownFaces[i * 4 + 3];
+            float padX = (right - left) * PADDING;
+            float padY = (bottom - top) * PADDING;
+            mRegions[count * 4] = Math.max(0, (int) (left - padX));
+            mRegions[count * 4 + 1] = Math.max(0, (int) (top - padY));
+            mRegions[count * 4 + 2] = Math.min(uprightWidth, (int) (right + padX));
+            mRegions[count * 4 + 3] = Math.min(uprightHeight, (int) (bottom + padY));
+            if (mRegions[count * 4] < mRegions[count * 4 + 2]
+                    && mRegions[count * 4 + 1] < mRegions[count * 4 + 3]) {
+                count++;
+            }
+        }
+
+        // 重なる領域は 1つにまとめる（同じ顔を 2回検出しないように）
+        for (int i = 0; i < count; i++) {
+            for (int j = i + 1; j < count; j++) {
+                if (intersects(i, j)) {
+                    mRegions[i * 4] = Math.min(mRegions[i * 4], mRegions[j * 4]);
+                    mRegions[i * 4 + 1] = Math.min(mRegions[i * 4 + 1], mRegions[j * 4 + 1]);
+                    mRegions[i * 4 + 2] = Math.max(mRegions[i * 4 + 2], mRegions[j * 4 + 2]);
+                    mRegions[i * 4 + 3] = Math.max(mRegions[i * 4 + 3], mRegions[j * 4 + 3]);
+                    count--;
+                    System.arraycopy(mRegions, count * 4, mRegions, j * 4, 4);
+                    // 広がった領域 i を、改めて全ての領域と比べる
+                    j = i;
+                }
+            }
+        }
+        return count;
+    }
+
+    private boolean intersects(int i, int j) {
+        return mRegions[i * 4] < mRegions[j * 4 + 2] && mRegions[j * 4] < mRegions[i * 4 + 2]
+                && mRegions[i * 4 + 1] < mRegions[j * 4 + 3]
+                && mRegions[j * 4 + 1] < mRegions[i * 4 + 3];
+    }
+
+    /**
+     * Runs the detector on one region and adds the faces found, in full-frame coordinates, to
+     * the results.
+     */
+    private void detectRegion(Frame frame, int region, SparseArray<Face> results) {
+        Frame.Metadata metadata = frame.getMetadata();
+        int width = metadata.getWidth();
+        int height = metadata.getHeight();
+        int rotation = metadata.getRotation();
+
+        // 正立座標の領域を、カメラ画像（回転前）の座標に変換する。回転 r は、カメラ画像を時計回りに
+        // r * 90 度回転すると正立することを表す
+        int uL = mRegions[region * 4];
+        int uT = mRegions[region * 4 + 1];
+        int uR = mRegions[region * 4 + 2];
+        int uB = mRegions[region * 4 + 3];
+        int xL;
+        int yT;
+        int xR;
+        int yB;
+        switch (rotation) {
+            case Frame.ROTATION_90:
+                xL = uT;
+                xR = uB;
+                yT = height - uR;
+                yB = height - uL;
+                break;
+            case Frame.ROTATION_180:
+                xL = width - uR;
+                xR = width - uL;
+                yT = height - uB;
+                yB = height - uT;
+                break;
+            case Frame.ROTATION_270:
+                xL = width - uB;
+                xR = width - uT;
+                yT = uL;
+                yB = uR;
+                break;
+            default:
+                xL = uL;
+                xR = uR;
+                yT = uT;
+                yB = uB;
+                break;
+        }
+
+        // NV21 のため、偶数の座標・大きさに揃える
+        xL &= ~1;
+        yT &= ~1;
+        int cropWidth = Math.min((xR - xL + 1) & ~1, (width - xL) & ~1);
+        int cropHeight = Math.min((yB - yT + 1) & ~1, (height - yT) & ~1);
+        if (cropWidth <= 0 || cropHeight <= 0) {
+            return;
+        }
+        xR = xL + cropWidth;
+        yB = yT + cropHeight;
+
+        Frame crop = new Frame.Builder()
+                .setImageData(cropLuma(frame.getGrayscaleImageData(), width, xL, yT, cropWidth,
+                        cropHeight), cropWidth, cropHeight, ImageFormat.NV21)
+                .setId(metadata.getId())
+                .setTimestampMillis(metadata.getTimestampMillis())
+                .setRotation(rotation)
+                .build();
+
+        // 切り出した画像の正立座標の原点が、フレーム全体の正立座標のどこにあたるか
+        float offsetX;
+        float offsetY;
+        switch (rotation) {
+            case Frame.ROTATION_90:
+                offsetX = height - yB;
+                offsetY = xL;
+                break;
+            case Frame.ROTATION_180:
+                offsetX = width - xR;
+                offsetY = height - yB;
+                break;
+            case Frame.ROTATION_270:
+                offsetX = yT;
+                offsetY = width - xR;
+                break;
+            default:
+                offsetX = xL;
+                offsetY = yT;
+                break;
+        }
+
+        SparseArray<Face> faces = mDelegate.detect(crop);
+        for (int i = 0, size = faces.size(); i < size; i++) {
+            Face face = Faces.transform(faces.valueAt(i), 1.0f, offsetX, offsetY);
+            results.put(mStitcher.assign(face), face);
+        }
+    }
+
+    /**
+     * Copies a rectangle of the luma plane into the reusable crop buffer, which is returned as an
+     * NV21 image with neutral chroma.
+     */
+    private ByteBuffer cropLuma(ByteBuffer source, int sourceWidth, int left, int top, int width,
+                                int height) {
+        int lumaSize = width * height;
+        int size = lumaSize + lumaSize / 2;
+        if (mCropBuffer.length < size) {
+            mCropBuffer = new byte[size];
+        }
+        // 色差は常に中間値（無彩色）とする
+        Arrays.fill(mCropBuffer, lumaSize, size, (byte) 128);
+
+        if (source.hasArray()) {
+            byte[] array = source.array();
+            int base = source.arrayOffset();
+            for (int y = 0; y < height; y++) {
+                System.arraycopy(array, base + (top + y) * sourceWidth + left,
+                        mCropBuffer, y * width, width);
+            }
+        } else {
+            for (int y = 0; y < height; y++) {
+                int offset = (top + y) * sourceWidth + left;
+                for (int x = 0; x < width; x++) {
+                    mCropBuffer[y * width + x] = source.get(offset + x);
+                }
+            }
+        }
+        return ByteBuffer.wrap(mCropBuffer, 0, size);
+    }
+
+    private void rememberFaces(SparseArray<Face> faces) {
+        mKnownFaceCount = faces.size();
+        if (mKnownFaces.length < mKnownFaceCount * 4) {
+            mKnownFaces = new float[mKnownFaceCount * 4];
+        }
+        for (int i = 0; i < mKnownFaceCount; i++) {
+            Face face = faces.valueAt(i);
+            PointF position = face.getPosition();
+            mKnownFaces[i * 4] = position.x;
+            mKnownFaces[i * 4 + 1] = position.y;
+            mKnownFaces[i * 4 + 2] = position.x + face.getWidth();
+            mKnownFaces[i * 4 + 3] = position.y + face.getHeight();
+        }
+    }
+}
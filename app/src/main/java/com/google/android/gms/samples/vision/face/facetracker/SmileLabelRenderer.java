@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+/**
+ * Draws the smile level label ("笑顔レベル: 0.00" to "笑顔レベル: 1.00") without formatting or
+ * allocating anything per frame.  The smile level is shown at two decimal places, so there are
+ * only 101 distinct labels (plus one for an uncomputed probability); all of them are built once
+ * up front.<p>
+ *
+ * The labels are immutable after construction, so one instance may be shared by all face
+ * graphics.
+ */
+final class SmileLabelRenderer {
+    private static final String PREFIX = "笑顔レベル: ";
+    private static final int LEVEL_COUNT = 101;
+    // Face.UNCOMPUTED_PROBABILITY の場合に表示するラベルの位置
+    private static final int UNCOMPUTED_INDEX = LEVEL_COUNT;
+
+    private final String[] mLabels = new String[LEVEL_COUNT + 1];
+
+    SmileLabelRenderer() {
+        char[] digits = new char[4];
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            digits[0] = (char) ('0' + level / 100);
+            digits[1] = '.';
+            digits[2] = (char) ('0' + (level / 10) % 10);
+            digits[3] = (char) ('0' + level % 10);
+            mLabels[level] = PREFIX + new String(digits);
+        }
+        // 従来の表示 (String.format("%.2f", -1.0f)) と同じ
+        mLabels[UNCOMPUTED_INDEX] = PREFIX + "-1.00";
+    }
+
+    /**
+     * Draws the label for the given smile probability with its left end of the baseline at
+     * (x, y).
+     */
+    void draw(Canvas canvas, float probability, float x, float y, Paint paint) {
+        canvas.drawText(mLabels[indexOf(probability)], x, y, paint);
+    }
+
+    private static int indexOf(float probability) {
+        if (probability < 0.0f) {
+            return UNCOMPUTED_INDEX;
+        }
+        return Math.min(Math.round(probability * 100.0f), LEVEL_COUNT - 1);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.LruCache;
+
+/**
+ * Process-wide cache of decoded sticker images (e.g., the bunny ears drawn above a smiling face).
+ * Each asset is decoded once per target density and shared, as an immutable bitmap, by every face
+ * graphic that draws it.  The cache is bounded by the total byte size of the decoded bitmaps and
+ * evicts the least recently used entries first.
+ */
+final class StickerCache {
+    // 1/16 of the heap is plenty for a handful of stickers while leaving room for the camera
+    private static final int MAX_SIZE_DIVISOR = 16;
+
+    private static StickerCache sInstance;
+
+    private final Resources mResources;
+    private final LruCache<Key, Bitmap> mCache;
+
+    /**
+     * Returns the shared cache, creating it on first use.
+     */
+    static synchronized StickerCache getInstance(Context context) {
+        if (sInstance == null) {
+            int maxBytes = (int) Math.min(Integer.MAX_VALUE,
+                    Runtime.getRuntime().maxMemory() / MAX_SIZE_DIVISOR);
+            sInstance = new StickerCache(context.getApplicationContext().getResources(), maxBytes);
+        }
+        return sInstance;
+    }
+
+    private StickerCache(Resources resources, int maxBytes) {
+        mResources = resources;
+        mCache = new LruCache<Key, Bitmap>(maxBytes) {
+            @Override
+            protected Bitmap create(Key key) {
+                // LruCache はミス時にロックの外でこのメソッドを呼び出す
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inMutable = false;
+                options.inTargetDensity = key.mDensityDpi;
+                return BitmapFactory.decodeResource(mResources, key.mResourceId, options);
+            }
+
+            @Override
+            protected int sizeOf(Key key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Returns the decoded sticker for the current display density.
+     */
+    Bitmap get(int resourceId) {
+        return get(resourceId, mResources.getDisplayMetrics().densityDpi);
+    }
+
+    /**
+     * Returns the decoded sticker scaled for the given target density, decoding it on a miss.
+     */
+    Bitmap get(int resourceId, int densityDpi) {
+        return mCache.get(new Key(resourceId, densityDpi));
+    }
+
+    /**
+     * Drops all cached bitmaps, e.g., in response to a low memory signal.
+     */
+    void clear() {
+        mCache.evictAll();
+    }
+
+    int hitCount() {
+        return mCache.hitCount();
+    }
+
+    int missCount() {
+        return mCache.missCount();
+    }
+
+    int evictionCount() {
+        return mCache.evictionCount();
+    }
+
+    /**
+     * Current size of the cached bitmaps, in bytes.
+     */
+    int size() {
+        return mCache.size();
+    }
+
+    @Override
+    public String toString() {
+        return mCache.toString();
+    }
+
+    /**
+     * Cache key of a sticker asset at a particular target density.
+     */
+    private static final class Key {
+        final int mResourceId;
+        final int mDensityDpi;
+
+        Key(int resourceId, int densityDpi) {
+            mResourceId = resourceId;
+            mDensityDpi = densityDpi;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return mResourceId == other.mResourceId && mDensityDpi == other.mDensityDpi;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mResourceId + mDensityDpi;
+        }
+    }
+}
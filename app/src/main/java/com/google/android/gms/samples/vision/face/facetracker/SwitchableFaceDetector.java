@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+
+/**
+ * Stable face detector wrapper whose underlying detector can be replaced at runtime by switching
+ * to another {@link DetectionProfile}, without restarting the camera source.<p>
+ *
+ * {@link #setProfile} may be called from any thread; the switch takes effect on the detection
+ * thread, before the next detection, where the detector for the new profile is built and the
+ * previous one released.  Face IDs start over with the new detector, so faces reappear as new
+ * faces after a switch.
+ */
+class SwitchableFaceDetector extends Detector<Face> {
+    private static final String TAG = "SwitchableFaceDetector";
+
+    /**
+     * Builds the underlying detector for a profile.  Called on the detection thread.
+     */
+    interface Factory {
+        Detector<Face> create(DetectionProfile profile);
+    }
+
+    private final Factory mFactory;
+    private volatile DetectionProfile mRequestedProfile;
+
+    // 以下は検出スレッドからのみ変更する（release を除く）
+    private volatile DetectionProfile mProfile;
+    private volatile Detector<Face> mDelegate;
+    private volatile int mSwitchCount;
+
+    SwitchableFaceDetector(Factory factory, DetectionProfile profile) {
+        mFactory = factory;
+        mRequestedProfile = profile;
+        mProfile = profile;
+        mDelegate = factory.create(profile);
+    }
+
+    /**
+     * Requests switching to the given profile.  Does nothing if it equals the current profile.
+     */
+    void setProfile(DetectionProfile profile) {
+        mRequestedProfile = profile;
+    }
+
+    /**
+     * Returns the most recently requested profile, which may not have taken effect yet.
+     */
+    DetectionProfile getProfile() {
+        return mRequestedProfile;
+    }
+
+    /**
+     * Number of times the underlying detector was replaced.
+     */
+    int getSwitchCount() {
+        return mSwitchCount;
+    }
+
+    @Override
+    public SparseArray<Face> detect(Frame frame) {
+        DetectionProfile requested = mRequestedProfile;
+        if (!requested.equals(mProfile)) {
+            switchTo(requested);
+        }
+        return mDelegate.detect(frame);
+    }
+
+    @Override
+    public boolean isOperational() {
+        Detector<Face> delegate = mDelegate;
+        return delegate != null && delegate.isOperational();
+    }
+
+    @Override
+    public boolean setFocus(int id) {
+        Detector<Face> delegate = mDelegate;
+        return delegate != null && delegate.setFocus(id);
+    }
+
+    @Override
+    public void release() {
+        Detector<Face> delegate = mDelegate;
+        if (delegate != null) {
+            delegate.release();
+            mDelegate = null;
+        }
+        super.release();
+    }
+
+    private void switchTo(DetectionProfile profile) {
+        Detector<Face> previous = mDelegate;
+        mDelegate = mFactory.create(profile);
+        mProfile = profile;
+        previous.release();
+        mSwitchCount++;
+        Log.i(TAG, "Switched to " + profile);
+    }
+}
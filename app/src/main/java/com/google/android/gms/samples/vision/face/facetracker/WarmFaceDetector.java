@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+import com.google.android.gms.vision.face.FaceDetector;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Face detector which obtains its underlying detector only once the {@link DetectorWarmup} is
+ * ready.  The first detection awaits the warm-up on the detection thread, so that neither the UI
+ * thread nor the camera waits for the detector; frames arriving meanwhile are dropped by the
+ * admission stage.  If the warmed-up detector is still available and matches the profile, it is
+ * used; otherwise a new detector is built, on the detection thread as well.
+ */
+class WarmFaceDetector extends Detector<Face> {
+    private static final String TAG = "WarmFaceDetector";
+
+    private final Context mContext;
+    private final DetectorWarmup mWarmup;
+    private final DetectionProfile mProfile;
+    private volatile Detector<Face> mDelegate;
+
+    WarmFaceDetector(Context context, DetectorWarmup warmup, DetectionProfile profile) {
+        mContext = context.getApplicationContext();
+        mWarmup = warmup;
+        mProfile = profile;
+    }
+
+    @Override
+    public SparseArray<Face> detect(Frame frame) {
+        Detector<Face> delegate = mDelegate;
+        if (delegate == null) {
+            delegate = obtainDelegate();
+            if (delegate == null) {
+                return new SparseArray<>();
+            }
+            mDelegate = delegate;
+        }
+
+        SparseArray<Face> faces = delegate.detect(frame);
+        if (faces.size() > 0) {
+            mWarmup.recordFace();
+        }
+        return faces;
+    }
+
+    /**
+     * Returns false until the warm-up is done and the underlying detector is operational.
+     */
+    @Override
+    public boolean isOperational() {
+        Detector<Face> delegate = mDelegate;
+        return (delegate != null) ? delegate.isOperational() : mWarmup.isOperational();
+    }
+
+    @Override
+    public boolean setFocus(int id) {
+        Detector<Face> delegate = mDelegate;
+        return delegate != null && delegate.setFocus(id);
+    }
+
+    @Override
+    public void release() {
+        Detector<Face> delegate = mDelegate;
+        if (delegate != null) {
+            delegate.release();
+        }
+        super.release();
+    }
+
+    private Detector<Face> obtainDelegate() {
+        try {
+            mWarmup.getReadiness().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            // ウォームアップに失敗した場合も、新しく検出器を作って続ける
+            Log.e(TAG, "Detector warm-up failed.", e.getCause());
+        }
+
+        // ウォームアップした検出器は DetectionProfile.DEFAULT で作られている
+        if (mProfile.equals(DetectionProfile.DEFAULT)) {
+            try {
+                FaceDetector detector = mWarmup.takeDetector();
+                if (detector != null) {
+                    return detector;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return mProfile.createDetector(mContext);
+    }
+}
@@ -17,6 +17,9 @@ package com.google.android.gms.samples.vision.face.facetracker.ui.camera;
 
 import android.content.Context;
 import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.SurfaceHolder;
@@ -27,10 +30,34 @@ import com.google.android.gms.common.images.Size;
 import com.google.android.gms.vision.CameraSource;
 
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Shows the camera preview.  The camera is opened, started, stopped and released on a dedicated
+ * camera thread, so that the UI thread is never blocked while the camera opens.<p>
+ *
+ * Requests to start and stop are made on the UI thread, which also keeps the state
+ * ({@link #STATE_STOPPED}, {@link #STATE_STARTING} or {@link #STATE_RUNNING}).  The camera thread
+ * executes the requests in order, so a stop requested while the camera is still starting takes
+ * effect right after the start; completions are posted back to the UI thread, and a completion
+ * which has been overtaken by a later request is ignored.<p>
+ *
+ * The one exception is the destruction of the preview surface: the camera must no longer draw
+ * into the surface once {@link SurfaceHolder.Callback#surfaceDestroyed} returns, so there the UI
+ * thread requests a stop and waits for the camera thread to complete it.  The camera is started
+ * again when a new surface is created.
+ */
 public class CameraSourcePreview extends ViewGroup {
     private static final String TAG = "CameraSourcePreview";
 
+    // サーフェス破棄時に、カメラスレッドでの停止を待つ最大時間
+    private static final long SURFACE_STOP_TIMEOUT_MILLIS = 2000;
+
+    public static final int STATE_STOPPED = 0;
+    public static final int STATE_STARTING = 1;
+    public static final int STATE_RUNNING = 2;
+
     private Context mContext;
     private SurfaceView mSurfaceView;
     private boolean mStartRequested;
@@ -39,6 +66,20 @@ public class CameraSourcePreview extends ViewGroup {
 
     private GraphicOverlay mOverlay;
 
+    // 以下の状態は UI スレッドからのみ変更する
+    private int mState = STATE_STOPPED;
+    // start・stop を要求するたびに増やし、古い要求の完了通知を無視するために使う
+    private int mGeneration;
+
+    private HandlerThread mCameraThread;
+    private Handler mCameraHandler;
+
+    // 起動にかかった時間の計測（カメラスレッド・検出スレッドからも更新される）
+    private volatile long mStartRequestMillis;
+    private volatile boolean mAwaitingFirstFrame;
+    private volatile long mCameraOpenMillis = -1;
+    private volatile long mTimeToFirstFrameMillis = -1;
+
     public CameraSourcePreview(Context context, AttributeSet attrs) {
         super(context, attrs);
         mContext = context;
@@ -50,7 +91,11 @@ public class CameraSourcePreview extends ViewGroup {
         addView(mSurfaceView);
     }
 
-    public void start(CameraSource cameraSource) throws IOException {
+    /**
+     * Requests the camera source to be started as soon as the preview surface is available.
+     * Returns immediately; the camera is started on the camera thread.
+     */
+    public void start(CameraSource cameraSource) {
         if (cameraSource == null) {
             stop();
         }
@@ -59,62 +104,210 @@ public class CameraSourcePreview extends ViewGroup {
 
         if (mCameraSource != null) {
             mStartRequested = true;
+            mStartRequestMillis = SystemClock.elapsedRealtime();
             startIfReady();
         }
     }
 
-    public void start(CameraSource cameraSource, GraphicOverlay overlay) throws IOException {
+    public void start(CameraSource cameraSource, GraphicOverlay overlay) {
         mOverlay = overlay;
         start(cameraSource);
     }
 
+    /**
+     * Requests the camera source to be stopped.  Returns immediately; the camera is stopped on the
+     * camera thread, after a start which is still in progress.
+     */
     public void stop() {
-        if (mCameraSource != null) {
-            mCameraSource.stop();
+        mStartRequested = false;
+        mAwaitingFirstFrame = false;
+        if (mCameraSource != null && mState != STATE_STOPPED) {
+            final CameraSource cameraSource = mCameraSource;
+            mState = STATE_STOPPED;
+            mGeneration++;
+            getCameraHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    cameraSource.stop();
+                }
+            });
         }
     }
 
+    /**
+     * Releases the camera source on the camera thread, and then ends the camera thread.
+     */
     public void release() {
+        stop();
         if (mCameraSource != null) {
-            mCameraSource.release();
+            final CameraSource cameraSource = mCameraSource;
             mCameraSource = null;
+            getCameraHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    cameraSource.release();
+                }
+            });
+        }
+        if (mCameraThread != null) {
+            mCameraThread.quitSafely();
+            mCameraThread = null;
+            mCameraHandler = null;
+        }
+    }
+
+    public int getState() {
+        return mState;
+    }
+
+    /**
+     * Notes that a camera frame has been received.  The first call after each start records the
+     * time to the first preview frame; later calls return right away.  May be called from any
+     * thread, e.g., for every frame received by the detector.
+     */
+    public void markFrame() {
+        if (mAwaitingFirstFrame) {
+            mAwaitingFirstFrame = false;
+            mTimeToFirstFrameMillis = SystemClock.elapsedRealtime() - mStartRequestMillis;
+            Log.i(TAG, "Time to first preview frame: " + mTimeToFirstFrameMillis + " ms (camera"
+                    + " open: " + mCameraOpenMillis + " ms)");
         }
     }
 
-    private void startIfReady() throws IOException {
-        if (mStartRequested && mSurfaceAvailable) {
-            mCameraSource.start(mSurfaceView.getHolder());
-            if (mOverlay != null) {
-                Size size = mCameraSource.getPreviewSize();
-                int min = Math.min(size.getWidth(), size.getHeight());
-                int max = Math.max(size.getWidth(), size.getHeight());
-                if (isPortraitMode()) {
-                    // Swap width and height sizes when in portrait, since it will be rotated by
-                    // 90 degrees
-                    mOverlay.setCameraInfo(min, max, mCameraSource.getCameraFacing());
-                } else {
-                    mOverlay.setCameraInfo(max, min, mCameraSource.getCameraFacing());
+    /**
+     * Time from the most recent start request to the first camera frame, or -1 if no frame has
+     * been received yet.
+     */
+    public long getTimeToFirstFrameMillis() {
+        return mTimeToFirstFrameMillis;
+    }
+
+    /**
+     * Time the camera thread spent starting the camera for the most recent start, or -1 if the
+     * camera has not been started.
+     */
+    public long getCameraOpenMillis() {
+        return mCameraOpenMillis;
+    }
+
+    /**
+     * Stops the camera like {@link #stop()}, but waits until the camera thread has completed the
+     * stop, along with any start still in progress.  If the camera was started or starting, it is
+     * started again once the surface is available.
+     */
+    private void stopAndWait() {
+        boolean restart = mStartRequested || mState != STATE_STOPPED;
+        stop();
+        if (mCameraHandler != null) {
+            // stop はカメラスレッドで順に実行されるので、その後に置いた合図を待てば完了している
+            final CountDownLatch stopped = new CountDownLatch(1);
+            mCameraHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    stopped.countDown();
+                }
+            });
+            try {
+                if (!stopped.await(SURFACE_STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    Log.w(TAG, "Camera did not stop within " + SURFACE_STOP_TIMEOUT_MILLIS
+                            + " ms of the preview surface being destroyed.");
                 }
-                mOverlay.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+        }
+        mStartRequested = restart && mCameraSource != null;
+    }
+
+    private Handler getCameraHandler() {
+        if (mCameraHandler == null) {
+            mCameraThread = new HandlerThread("CameraControl");
+            mCameraThread.start();
+            mCameraHandler = new Handler(mCameraThread.getLooper());
+        }
+        return mCameraHandler;
+    }
+
+    private void startIfReady() {
+        if (mStartRequested && mSurfaceAvailable && mState == STATE_STOPPED) {
+            final CameraSource cameraSource = mCameraSource;
+            final SurfaceHolder holder = mSurfaceView.getHolder();
+            final int generation = ++mGeneration;
+            mState = STATE_STARTING;
             mStartRequested = false;
+            mTimeToFirstFrameMillis = -1;
+            mAwaitingFirstFrame = true;
+
+            getCameraHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    long start = SystemClock.elapsedRealtime();
+                    boolean started;
+                    try {
+                        cameraSource.start(holder);
+                        started = true;
+                    } catch (IOException | RuntimeException e) {
+                        Log.e(TAG, "Could not start camera source.", e);
+                        started = false;
+                    }
+                    mCameraOpenMillis = SystemClock.elapsedRealtime() - start;
+
+                    final boolean success = started;
+                    post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onCameraStarted(generation, success);
+                        }
+                    });
+                }
+            });
         }
     }
 
+    /**
+     * Called on the UI thread when the camera thread has finished starting the camera.
+     */
+    private void onCameraStarted(int generation, boolean success) {
+        if (generation != mGeneration) {
+            // 起動中に stop が要求された
+            return;
+        }
+        if (!success) {
+            mState = STATE_STOPPED;
+            mAwaitingFirstFrame = false;
+            return;
+        }
+
+        mState = STATE_RUNNING;
+        if (mOverlay != null) {
+            Size size = mCameraSource.getPreviewSize();
+            int min = Math.min(size.getWidth(), size.getHeight());
+            int max = Math.max(size.getWidth(), size.getHeight());
+            if (isPortraitMode()) {
+                // Swap width and height sizes when in portrait, since it will be rotated by
+                // 90 degrees
+                mOverlay.setCameraInfo(min, max, mCameraSource.getCameraFacing());
+            } else {
+                mOverlay.setCameraInfo(max, min, mCameraSource.getCameraFacing());
+            }
+            mOverlay.clear();
+        }
+        // プレビューサイズが決まったので、レイアウトし直す
+        requestLayout();
+    }
+
     private class SurfaceCallback implements SurfaceHolder.Callback {
         @Override
         public void surfaceCreated(SurfaceHolder surface) {
             mSurfaceAvailable = true;
-            try {
-                startIfReady();
-            } catch (IOException e) {
-                Log.e(TAG, "Could not start camera source.", e);
-            }
+            startIfReady();
         }
 
         @Override
         public void surfaceDestroyed(SurfaceHolder surface) {
             mSurfaceAvailable = false;
+            // 戻った後はサーフェスが使えないので、カメラの停止を待つ
+            stopAndWait();
         }
 
         @Override
@@ -158,11 +351,7 @@ public class CameraSourcePreview extends ViewGroup {
             getChildAt(i).layout(0, 0, childWidth, childHeight);
         }
 
-        try {
-            startIfReady();
-        } catch (IOException e) {
-            Log.e(TAG, "Could not start camera source.", e);
-        }
+        startIfReady();
     }
 
     private boolean isPortraitMode() {
@@ -19,11 +19,16 @@ import android.content.Context;
 import android.graphics.Canvas;
 import android.util.AttributeSet;
 import android.view.View;
+import android.view.WindowManager;
 
+import com.google.android.gms.samples.vision.face.facetracker.core.PreviewTransform;
 import com.google.android.gms.vision.CameraSource;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A view which renders a series of custom graphics to be overlayed on top of an associated preview
@@ -42,16 +47,64 @@ import java.util.Set;
  * <li>{@link Graphic#translateX(float)} and {@link Graphic#translateY(float)} adjust the coordinate
  * from the preview's coordinate system to the view coordinate system.</li>
  * </ol>
+ *
+ * Redraw requests from detector threads are coalesced by a {@link RedrawScheduler}, so that the
+ * overlay is invalidated at most once per display frame, in step with vsync.<p>
+ *
+ * By default graphics are drawn on the UI thread in {@link #onDraw(Canvas)}.  Alternatively, an
+ * {@link OverlaySurfaceRenderer} may be attached to draw them on a background thread instead, in
+ * which case redraw requests bypass the UI thread altogether.<p>
+ *
+ * Graphics are drawn from an immutable snapshot of the registered graphics, which writers replace
+ * atomically on every change.  Drawing therefore never holds the lock that detector threads take
+ * to add or remove graphics.  A removed graphic may still be drawn by a draw that started from an
+ * older snapshot, so graphics which are to be reused are handed back through
+ * {@link #recycle(Graphic, Recycler)} only once a later snapshot has been drawn.
  */
 public class GraphicOverlay extends View {
+    private static final Graphic[] EMPTY_SNAPSHOT = new Graphic[0];
+
     private final Object mLock = new Object();
     private int mPreviewWidth;
-    private float mWidthScaleFactor = 1.0f;
     private int mPreviewHeight;
-    private float mHeightScaleFactor = 1.0f;
     private int mFacing = CameraSource.CAMERA_FACING_BACK;
+
+    // プレビュー座標からビュー座標への変換。setCameraInfo またはサイズ変更時にのみ再計算する
+    private volatile PreviewTransform mTransform = PreviewTransform.IDENTITY;
     private Set<Graphic> mGraphics = new HashSet<>();
 
+    // onDraw から参照する、登録済みグラフィックの不変スナップショット（書き込み側が丸ごと差し替える）
+    private volatile Graphic[] mSnapshot = EMPTY_SNAPSHOT;
+
+    // 書き込み側がロック取得のために待った時間の累計（競合の計測用）
+    private final AtomicLong mWriterWaitNanos = new AtomicLong();
+    private final AtomicLong mWriterCount = new AtomicLong();
+
+    private final RedrawScheduler mRedrawScheduler;
+
+    // null の場合は onDraw で描画する
+    private volatile OverlaySurfaceRenderer mSurfaceRenderer;
+    // onDraw と描画スレッドが同時に Graphic#draw を呼び出さないようにする
+    private final Object mDrawLock = new Object();
+
+    // 取り除かれ、次の描画の後で再利用に回すグラフィックとその返却先（mLock で保護）
+    private ArrayList<Graphic> mRetired = new ArrayList<>();
+    private ArrayList<Recycler> mRetiredRecyclers = new ArrayList<>();
+    // 描画中に返却するグラフィック（mDrawLock で保護）。mRetired と入れ替えて使い回す
+    private ArrayList<Graphic> mRecycling = new ArrayList<>();
+    private ArrayList<Recycler> mRecyclingRecyclers = new ArrayList<>();
+
+    /**
+     * Takes back a graphic which was removed from the overlay, once no draw can use it any more.
+     */
+    public interface Recycler {
+        /**
+         * Called on the drawing thread after the graphic was removed and a later snapshot of the
+         * overlay was drawn.
+         */
+        void recycle(Graphic graphic);
+    }
+
     /**
      * Base class for a custom graphics object to be rendered within the graphic overlay.  Subclass
      * this and implement the {@link Graphic#draw(Canvas)} method to define the
@@ -83,14 +136,14 @@ public class GraphicOverlay extends View {
          * scale.
          */
         public float scaleX(float horizontal) {
-            return horizontal * mOverlay.mWidthScaleFactor;
+            return mOverlay.mTransform.scaleX(horizontal);
         }
 
         /**
          * Adjusts a vertical value of the supplied value from the preview scale to the view scale.
          */
         public float scaleY(float vertical) {
-            return vertical * mOverlay.mHeightScaleFactor;
+            return mOverlay.mTransform.scaleY(vertical);
         }
 
         /**
@@ -98,11 +151,7 @@ public class GraphicOverlay extends View {
          * system.
          */
         public float translateX(float x) {
-            if (mOverlay.mFacing == CameraSource.CAMERA_FACING_FRONT) {
-                return mOverlay.getWidth() - scaleX(x);
-            } else {
-                return scaleX(x);
-            }
+            return mOverlay.mTransform.translateX(x);
         }
 
         /**
@@ -110,46 +159,118 @@ public class GraphicOverlay extends View {
          * system.
          */
         public float translateY(float y) {
-            return scaleY(y);
+            return mOverlay.mTransform.translateY(y);
+        }
+
+        /**
+         * Returns the current preview-to-view transform.  Graphics which convert many values in
+         * one draw should fetch it once, so that all of them use the same transform even if the
+         * camera info changes concurrently.
+         */
+        public PreviewTransform getTransform() {
+            return mOverlay.mTransform;
+        }
+
+        /**
+         * Converts {@code pointCount} (x, y) pairs, starting at {@code offset}, in place from the
+         * preview's coordinate system to the view coordinate system.
+         */
+        public void translatePoints(float[] points, int offset, int pointCount) {
+            mOverlay.mTransform.mapPoints(points, offset, points, offset, pointCount);
         }
 
         public void postInvalidate() {
-            mOverlay.postInvalidate();
+            mOverlay.postRedraw();
         }
     }
 
     public GraphicOverlay(Context context, AttributeSet attrs) {
         super(context, attrs);
+        WindowManager windowManager =
+                (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        mRedrawScheduler = new RedrawScheduler(new RedrawScheduler.Target() {
+            @Override
+            public void onRedraw(long frameTimeNanos) {
+                redraw();
+            }
+        }, windowManager.getDefaultDisplay().getRefreshRate());
     }
 
     /**
      * Removes all graphics from the overlay.
      */
     public void clear() {
+        long start = System.nanoTime();
         synchronized (mLock) {
+            recordWriterWait(start);
             mGraphics.clear();
+            publishSnapshot();
         }
-        postInvalidate();
+        postRedraw();
     }
 
     /**
      * Adds a graphic to the overlay.
      */
     public void add(Graphic graphic) {
+        long start = System.nanoTime();
         synchronized (mLock) {
-            mGraphics.add(graphic);
+            recordWriterWait(start);
+            if (mGraphics.add(graphic)) {
+                publishSnapshot();
+            }
         }
-        postInvalidate();
+        postRedraw();
     }
 
     /**
      * Removes a graphic from the overlay.
      */
     public void remove(Graphic graphic) {
+        long start = System.nanoTime();
+        synchronized (mLock) {
+            recordWriterWait(start);
+            if (mGraphics.remove(graphic)) {
+                publishSnapshot();
+            }
+        }
+        postRedraw();
+    }
+
+    /**
+     * Applies a batch of additions and removals to the overlay as a single update.  Graphics
+     * that were only changed in place need not be listed; the overlay is redrawn once either way.
+     */
+    public void update(List<? extends Graphic> added, List<? extends Graphic> removed) {
+        long start = System.nanoTime();
+        synchronized (mLock) {
+            recordWriterWait(start);
+            boolean changed = false;
+            for (int i = 0, size = removed.size(); i < size; i++) {
+                changed |= mGraphics.remove(removed.get(i));
+            }
+            for (int i = 0, size = added.size(); i < size; i++) {
+                changed |= mGraphics.add(added.get(i));
+            }
+            if (changed) {
+                publishSnapshot();
+            }
+        }
+        postRedraw();
+    }
+
+    /**
+     * Hands a graphic which has already been removed from the overlay to {@code recycler} once
+     * it can no longer be drawn, i.e., after the next draw, which only sees snapshots without the
+     * graphic.  Until then the graphic must be neither changed nor added again.  Graphics retired
+     * while nothing is drawn (e.g., while the overlay is hidden) wait for the next draw.
+     */
+    public void recycle(Graphic graphic, Recycler recycler) {
         synchronized (mLock) {
-            mGraphics.remove(graphic);
+            mRetired.add(graphic);
+            mRetiredRecyclers.add(recycler);
         }
-        postInvalidate();
+        postRedraw();
     }
 
     /**
@@ -161,8 +282,114 @@ public class GraphicOverlay extends View {
             mPreviewWidth = previewWidth;
             mPreviewHeight = previewHeight;
             mFacing = facing;
+            updateTransform(getWidth(), getHeight());
+        }
+        postRedraw();
+    }
+
+    /**
+     * Total time, in nanoseconds, that callers of {@link #add}, {@link #remove}, {@link #update}
+     * and {@link #clear} have spent waiting to acquire the overlay lock.
+     */
+    public long getWriterWaitNanos() {
+        return mWriterWaitNanos.get();
+    }
+
+    /**
+     * Number of writes measured by {@link #getWriterWaitNanos()}.
+     */
+    public long getWriterCount() {
+        return mWriterCount.get();
+    }
+
+    /**
+     * Selects where graphics are drawn: on the given renderer's background thread, or, if
+     * {@code renderer} is null, on the UI thread in {@link #onDraw(Canvas)}.  May be changed at
+     * any time while the overlay is shown.  Must be called on the UI thread.
+     */
+    public void setSurfaceRenderer(OverlaySurfaceRenderer renderer) {
+        OverlaySurfaceRenderer previous = mSurfaceRenderer;
+        if (previous == renderer) {
+            return;
+        }
+        mSurfaceRenderer = renderer;
+        if (previous != null) {
+            previous.setOverlay(null);
+        }
+        if (renderer != null) {
+            renderer.setOverlay(this);
+        }
+        // どちらの場合も、このビュー自体の描画内容が変わる
+        invalidate();
+    }
+
+    /**
+     * Returns the scheduler which coalesces redraws of this overlay, e.g., to read its statistics.
+     */
+    public RedrawScheduler getRedrawScheduler() {
+        return mRedrawScheduler;
+    }
+
+    /**
+     * Schedules the overlay to be redrawn on the next frame.  May be called from any thread.  When
+     * a surface renderer is attached, the request goes straight to its render thread, so that a
+     * busy UI thread does not delay it.
+     */
+    private void postRedraw() {
+        OverlaySurfaceRenderer renderer = mSurfaceRenderer;
+        if (renderer != null) {
+            renderer.requestRender();
+        } else {
+            mRedrawScheduler.requestRedraw();
+        }
+    }
+
+    /**
+     * Redraws the whole overlay.  Called on the UI thread once per frame in which a redraw was
+     * requested.  The dirty rectangle of {@link #invalidate(int, int, int, int)} is ignored for
+     * hardware accelerated views since API 21, so the whole view is invalidated.
+     */
+    private void redraw() {
+        // 要求後にサーフェスでの描画へ切り替えられた場合は、このビューにはもう描くものがない
+        if (mSurfaceRenderer == null) {
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mRedrawScheduler.cancel();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        synchronized (mLock) {
+            updateTransform(w, h);
         }
-        postInvalidate();
+    }
+
+    /**
+     * Recomputes the preview-to-view transform.  Must be called with {@code mLock} held.
+     */
+    private void updateTransform(int viewWidth, int viewHeight) {
+        mTransform = PreviewTransform.create(mPreviewWidth, mPreviewHeight, viewWidth, viewHeight,
+                mFacing == CameraSource.CAMERA_FACING_FRONT);
+    }
+
+    private void recordWriterWait(long startNanos) {
+        mWriterWaitNanos.addAndGet(System.nanoTime() - startNanos);
+        mWriterCount.incrementAndGet();
+    }
+
+    /**
+     * Publishes a new immutable snapshot of the registered graphics.  Must be called with
+     * {@code mLock} held.
+     */
+    private void publishSnapshot() {
+        mSnapshot = mGraphics.isEmpty()
+                ? EMPTY_SNAPSHOT : mGraphics.toArray(new Graphic[mGraphics.size()]);
     }
 
     /**
@@ -172,15 +399,48 @@ public class GraphicOverlay extends View {
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
-        synchronized (mLock) {
-            if ((mPreviewWidth != 0) && (mPreviewHeight != 0)) {
-                mWidthScaleFactor = (float) canvas.getWidth() / (float) mPreviewWidth;
-                mHeightScaleFactor = (float) canvas.getHeight() / (float) mPreviewHeight;
-            }
+        if (mSurfaceRenderer == null) {
+            drawGraphics(canvas);
+        }
+    }
 
-            for (Graphic graphic : mGraphics) {
+    /**
+     * Draws the current snapshot of graphics on the supplied canvas, either from
+     * {@link #onDraw(Canvas)} or from an attached {@link OverlaySurfaceRenderer}.
+     */
+    void drawGraphics(Canvas canvas) {
+        synchronized (mDrawLock) {
+            // 先に取り除き済みのグラフィックを引き取り、その後でスナップショットを読む。取り除いた後に
+            // 公開されたスナップショットには含まれないので、この描画の後は二度と描画されない
+            takeRetired();
+            // スナップショットは mLock を保持せずに描画する（変換は setCameraInfo/onSizeChanged で計算済み）
+            Graphic[] graphics = mSnapshot;
+            for (Graphic graphic : graphics) {
                 graphic.draw(canvas);
             }
+            recycleRetired();
+        }
+    }
+
+    private void takeRetired() {
+        synchronized (mLock) {
+            if (mRetired.isEmpty()) {
+                return;
+            }
+            ArrayList<Graphic> graphics = mRecycling;
+            ArrayList<Recycler> recyclers = mRecyclingRecyclers;
+            mRecycling = mRetired;
+            mRecyclingRecyclers = mRetiredRecyclers;
+            mRetired = graphics;
+            mRetiredRecyclers = recyclers;
+        }
+    }
+
+    private void recycleRetired() {
+        for (int i = 0, size = mRecycling.size(); i < size; i++) {
+            mRecyclingRecyclers.get(i).recycle(mRecycling.get(i));
         }
+        mRecycling.clear();
+        mRecyclingRecyclers.clear();
     }
 }
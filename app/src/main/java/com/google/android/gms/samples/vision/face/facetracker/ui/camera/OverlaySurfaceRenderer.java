@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.ui.camera;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PixelFormat;
+import android.graphics.PorterDuff;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+import android.view.WindowManager;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Alternative to drawing a {@link GraphicOverlay} in {@link android.view.View#onDraw}: renders the
+ * overlay's graphics on a dedicated background thread into a transparent surface stacked above
+ * the camera preview, so that jank on the UI thread does not stall the overlay.<p>
+ *
+ * The renderer draws the same graphics with the same preview-to-view transform as the overlay it
+ * is attached to, so it must be laid out at the same position and size as that overlay (e.g., as
+ * another child of {@link CameraSourcePreview}).  Attach it with
+ * {@link GraphicOverlay#setSurfaceRenderer(OverlaySurfaceRenderer)}, and detach it again by
+ * passing {@code null} to return to drawing on the UI thread.<p>
+ *
+ * Render requests never pass through the UI thread: they are coalesced by a
+ * {@link RedrawScheduler} created on the render thread, whose {@link android.view.Choreographer}
+ * delivers vsync to that thread directly.
+ */
+public class OverlaySurfaceRenderer extends SurfaceView implements SurfaceHolder.Callback {
+    private static final String TAG = "OverlaySurfaceRenderer";
+
+    private final HandlerThread mRenderThread;
+    private final Handler mRenderHandler;
+    private final AtomicBoolean mRenderPending = new AtomicBoolean();
+
+    // サーフェスの生成・破棄と描画の排他制御
+    private final Object mSurfaceLock = new Object();
+    private boolean mSurfaceAvailable;
+
+    private volatile GraphicOverlay mOverlay;
+
+    // 描画スレッドの Choreographer で vsync に合わせる（生成されるまでは直接ポストする）
+    private volatile RedrawScheduler mRedrawScheduler;
+
+    private final Runnable mRenderRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mRenderPending.set(false);
+            render();
+        }
+    };
+
+    public OverlaySurfaceRenderer(Context context) {
+        super(context);
+
+        // カメラのプレビューの上に、透過したサーフェスを重ねる
+        setZOrderMediaOverlay(true);
+        getHolder().setFormat(PixelFormat.TRANSLUCENT);
+        getHolder().addCallback(this);
+
+        mRenderThread = new HandlerThread("OverlayRender");
+        mRenderThread.start();
+        mRenderHandler = new Handler(mRenderThread.getLooper());
+
+        WindowManager windowManager =
+                (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        final float refreshRate = windowManager.getDefaultDisplay().getRefreshRate();
+        mRenderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // Choreographer.getInstance() は呼び出したスレッドのものを返す
+                mRedrawScheduler = new RedrawScheduler(new RedrawScheduler.Target() {
+                    @Override
+                    public void onRedraw(long frameTimeNanos) {
+                        render();
+                    }
+                }, refreshRate);
+            }
+        });
+    }
+
+    /**
+     * Called by the overlay when this renderer is attached to or detached from it.
+     */
+    void setOverlay(GraphicOverlay overlay) {
+        mOverlay = overlay;
+        requestRender();
+    }
+
+    /**
+     * Requests that the overlay be rendered on the render thread, on its next display frame.  May
+     * be called from any thread; requests made while a render is still pending are merged into
+     * it.
+     */
+    void requestRender() {
+        RedrawScheduler scheduler = mRedrawScheduler;
+        if (scheduler != null) {
+            scheduler.requestRedraw();
+        } else if (mRenderPending.compareAndSet(false, true)) {
+            mRenderHandler.post(mRenderRunnable);
+        }
+    }
+
+    /**
+     * Returns the scheduler which coalesces renders, e.g., to read its statistics, or null until
+     * the render thread has created it.
+     */
+    public RedrawScheduler getRedrawScheduler() {
+        return mRedrawScheduler;
+    }
+
+    /**
+     * Stops the render thread.  The renderer cannot be used afterwards.
+     */
+    public void release() {
+        RedrawScheduler scheduler = mRedrawScheduler;
+        if (scheduler != null) {
+            scheduler.cancel();
+        }
+        mRenderHandler.removeCallbacks(mRenderRunnable);
+        mRenderThread.quitSafely();
+    }
+
+    private void render() {
+        synchronized (mSurfaceLock) {
+            if (!mSurfaceAvailable) {
+                return;
+            }
+            SurfaceHolder holder = getHolder();
+            Canvas canvas = holder.lockCanvas();
+            if (canvas == null) {
+                Log.w(TAG, "Could not lock the overlay surface.");
+                return;
+            }
+            try {
+                canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+                GraphicOverlay overlay = mOverlay;
+                if (overlay != null) {
+                    overlay.drawGraphics(canvas);
+                }
+            } finally {
+                holder.unlockCanvasAndPost(canvas);
+            }
+        }
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        synchronized (mSurfaceLock) {
+            mSurfaceAvailable = true;
+        }
+        requestRender();
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        requestRender();
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        // 描画中であれば、その完了を待ってから破棄させる
+        synchronized (mSurfaceLock) {
+            mSurfaceAvailable = false;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.ui.camera;
+
+import android.view.Choreographer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces redraw requests, which may arrive from any thread at any time, into at most one
+ * redraw per display frame.  The redraw runs from a {@link Choreographer} frame callback on the
+ * thread which created the scheduler, so it is aligned with vsync.<p>
+ *
+ * Also keeps statistics on how many requests were merged into each redraw, and on how many vsync
+ * periods were missed because the frame callback ran late.
+ */
+public final class RedrawScheduler implements Choreographer.FrameCallback {
+    /**
+     * Receives the coalesced redraw, once per frame in which a redraw was requested.
+     */
+    interface Target {
+        void onRedraw(long frameTimeNanos);
+    }
+
+    private final Target mTarget;
+    private final Choreographer mChoreographer;
+    private final long mFrameIntervalNanos;
+
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+    private final AtomicLong mRequestCount = new AtomicLong();
+    private final AtomicLong mFrameCount = new AtomicLong();
+    private final AtomicLong mMissedVsyncCount = new AtomicLong();
+
+    /**
+     * Must be called on a thread with a looper: the UI thread, or the render thread of an
+     * {@link OverlaySurfaceRenderer}.  Redraws run on that thread.
+     *
+     * @param refreshRate refresh rate of the display, in frames per second
+     */
+    RedrawScheduler(Target target, float refreshRate) {
+        mTarget = target;
+        mChoreographer = Choreographer.getInstance();
+        mFrameIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / refreshRate);
+    }
+
+    /**
+     * Requests a redraw on the next frame.  May be called from any thread; requests made before
+     * that frame starts are merged into one redraw.
+     */
+    public void requestRedraw() {
+        mRequestCount.incrementAndGet();
+        if (mScheduled.compareAndSet(false, true)) {
+            mChoreographer.postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Cancels a pending redraw, e.g., when the view is detached.
+     */
+    void cancel() {
+        if (mScheduled.compareAndSet(true, false)) {
+            mChoreographer.removeFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        // 再描画中に届いた要求は、次のフレームで処理する
+        mScheduled.set(false);
+        mFrameCount.incrementAndGet();
+
+        // フレームコールバックが vsync から 1 フレーム以上遅れた場合、その分の vsync を取りこぼしている
+        long lateNanos = System.nanoTime() - frameTimeNanos;
+        if (lateNanos >= mFrameIntervalNanos) {
+            mMissedVsyncCount.addAndGet(lateNanos / mFrameIntervalNanos);
+        }
+
+        mTarget.onRedraw(frameTimeNanos);
+    }
+
+    /**
+     * Number of redraws requested.
+     */
+    public long getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * Number of frames in which a redraw actually ran.
+     */
+    public long getFrameCount() {
+        return mFrameCount.get();
+    }
+
+    /**
+     * Average number of requests merged into each redraw.
+     */
+    public float getCoalescingRatio() {
+        long frames = mFrameCount.get();
+        return (frames == 0) ? 0.0f : (float) mRequestCount.get() / frames;
+    }
+
+    /**
+     * Number of vsync periods missed because a redraw ran later than its frame.
+     */
+    public long getMissedVsyncCount() {
+        return mMissedVsyncCount.get();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceState;
+import com.google.android.gms.samples.vision.face.facetracker.core.Landmarks;
+import com.google.android.gms.vision.face.Landmark;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The core module cannot depend on Google Play services, so it mirrors the landmark types in
+ * {@link Landmarks}.  Checks that the mirror matches the GMS constants, which the landmarks are
+ * stored by in {@link FaceState}.
+ */
+public class LandmarksTest {
+    @Test
+    public void landmarkTypesMatchGms() {
+        assertEquals(Landmark.BOTTOM_MOUTH, Landmarks.BOTTOM_MOUTH);
+        assertEquals(Landmark.LEFT_CHEEK, Landmarks.LEFT_CHEEK);
+        assertEquals(Landmark.LEFT_EAR_TIP, Landmarks.LEFT_EAR_TIP);
+        assertEquals(Landmark.LEFT_EAR, Landmarks.LEFT_EAR);
+        assertEquals(Landmark.LEFT_EYE, Landmarks.LEFT_EYE);
+        assertEquals(Landmark.LEFT_MOUTH, Landmarks.LEFT_MOUTH);
+        assertEquals(Landmark.NOSE_BASE, Landmarks.NOSE_BASE);
+        assertEquals(Landmark.RIGHT_CHEEK, Landmarks.RIGHT_CHEEK);
+        assertEquals(Landmark.RIGHT_EAR_TIP, Landmarks.RIGHT_EAR_TIP);
+        assertEquals(Landmark.RIGHT_EAR, Landmarks.RIGHT_EAR);
+        assertEquals(Landmark.RIGHT_EYE, Landmarks.RIGHT_EYE);
+        assertEquals(Landmark.RIGHT_MOUTH, Landmarks.RIGHT_MOUTH);
+    }
+
+    @Test
+    public void everyGmsLandmarkHasASlot() {
+        int[] types = {Landmark.BOTTOM_MOUTH, Landmark.LEFT_CHEEK, Landmark.LEFT_EAR_TIP,
+                Landmark.LEFT_EAR, Landmark.LEFT_EYE, Landmark.LEFT_MOUTH, Landmark.NOSE_BASE,
+                Landmark.RIGHT_CHEEK, Landmark.RIGHT_EAR_TIP, Landmark.RIGHT_EAR,
+                Landmark.RIGHT_EYE, Landmark.RIGHT_MOUTH};
+        for (int type : types) {
+            assertTrue("type " + type, type >= 0 && type < Landmarks.SLOT_COUNT);
+        }
+        assertEquals(types.length, FaceState.LANDMARK_SLOT_COUNT);
+    }
+}
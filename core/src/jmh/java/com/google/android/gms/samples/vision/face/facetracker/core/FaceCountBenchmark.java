@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How the per-frame cost of the geometry and tracking code scales with the number of faces: on
+ * each detection, every face is smoothed and its track updated; on each draw, every face is
+ * extrapolated and laid out.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class FaceCountBenchmark {
+    private static final long FRAME_INTERVAL_MILLIS = 33;
+    // 描画時刻は、最後の検出から外挿の上限までの間で変える
+    private static final long MAX_DRAW_OFFSET_MILLIS = 100;
+
+    @Param({"1", "2", "5", "10", "20", "50", "100"})
+    public int mFaceCount;
+
+    private FaceState[] mDetected;
+    private FaceState[] mSmoothed;
+    private FaceSmoother[] mSmoothers;
+    private TrackedFace[] mTracks;
+    private final FaceState mDrawState = new FaceState();
+    private final FaceLayout mLayout = new FaceLayout();
+    private final Random mRandom = new Random(42);
+    private PreviewTransform mTransform;
+    private long mTimestampMillis;
+    private long mDrawOffsetMillis;
+
+    @Setup
+    public void setUp() {
+        mTransform = SyntheticFaces.createTransform();
+        mDetected = SyntheticFaces.create(mFaceCount);
+        mSmoothed = new FaceState[mFaceCount];
+        mSmoothers = new FaceSmoother[mFaceCount];
+        mTracks = new TrackedFace[mFaceCount];
+        for (int i = 0; i < mFaceCount; i++) {
+            mSmoothed[i] = new FaceState();
+            mSmoothers[i] = new FaceSmoother();
+            mTracks[i] = new TrackedFace();
+        }
+        // 描画のベンチマークのために、全ての顔を 2回検出して速度を持たせておく
+        detection();
+        detection();
+    }
+
+    /**
+     * One detected frame: moves the faces, then smooths and tracks each of them.
+     */
+    @Benchmark
+    public float detection() {
+        mTimestampMillis += FRAME_INTERVAL_MILLIS;
+        SyntheticFaces.move(mDetected, mRandom);
+        float total = 0.0f;
+        for (int i = 0; i < mFaceCount; i++) {
+            FaceState state = mSmoothed[i];
+            state.set(mDetected[i]);
+            mSmoothers[i].apply(state, mTimestampMillis);
+            total += mTracks[i].update(state, mTimestampMillis, MotionPredictor.Config.DEFAULT);
+        }
+        return total;
+    }
+
+    /**
+     * One drawn frame between detections: extrapolates and lays out each face.  The
+     * tracks are not updated, so the draw time moves back and forth after the last detection.
+     */
+    @Benchmark
+    public float draw() {
+        mDrawOffsetMillis = (mDrawOffsetMillis + 1) % MAX_DRAW_OFFSET_MILLIS;
+        long drawMillis = mTimestampMillis + mDrawOffsetMillis;
+        float total = 0.0f;
+        for (int i = 0; i < mFaceCount; i++) {
+            mTracks[i].predict(drawMillis, mDrawState);
+            mLayout.layout(mDrawState, mTransform);
+            total += mLayout.mLeft + mLayout.mStickerTop;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of laying out one face for drawing, i.e., the work {@code FaceGraphic} does per face on
+ * every display frame apart from the canvas calls.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class FaceLayoutBenchmark {
+    // 描画時刻は、最後の検出から外挿の上限までの間で変える
+    private static final long MAX_DRAW_OFFSET_MILLIS = 100;
+    private static final long LAST_DETECTION_MILLIS = 33;
+
+    private final FaceLayout mLayout = new FaceLayout();
+    private final FaceState mDrawState = new FaceState();
+    private final TrackedFace mTrack = new TrackedFace();
+    private PreviewTransform mTransform;
+    private FaceState mFace;
+    private long mDrawOffsetMillis;
+
+    @Setup
+    public void setUp() {
+        mTransform = SyntheticFaces.createTransform();
+        mFace = SyntheticFaces.create(1)[0];
+        // 速度が 0 以外になるように、2回検出したことにする
+        mTrack.update(mFace, 0, MotionPredictor.Config.DEFAULT);
+        FaceState moved = new FaceState();
+        moved.set(mFace);
+        moved.moveTo(mFace.mCenterX + 3, mFace.mCenterY + 2, mFace.mWidth, mFace.mHeight);
+        mTrack.update(moved, LAST_DETECTION_MILLIS, MotionPredictor.Config.DEFAULT);
+    }
+
+    /**
+     * Maps the landmarks and computes the boxes, label and sticker positions.
+     */
+    @Benchmark
+    public float layout() {
+        mLayout.layout(mFace, mTransform);
+        return mLayout.mLeft + mLayout.mStickerTop + mLayout.mMouthBottom;
+    }
+
+    /**
+     * Everything a face graphic computes per draw: extrapolating the face to the draw time and
+     * laying it out.
+     */
+    @Benchmark
+    public float predictAndLayout() {
+        mDrawOffsetMillis = (mDrawOffsetMillis + 1) % MAX_DRAW_OFFSET_MILLIS;
+        long drawMillis = LAST_DETECTION_MILLIS + mDrawOffsetMillis;
+        mTrack.predict(drawMillis, mDrawState);
+        mLayout.layout(mDrawState, mTransform);
+        return mTrack.isExtrapolating(drawMillis) ? mLayout.mLeft : mLayout.mTop;
+    }
+}
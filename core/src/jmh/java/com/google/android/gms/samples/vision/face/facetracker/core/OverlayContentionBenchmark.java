@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contention between the detector thread, which adds and removes overlay graphics, and the
+ * thread drawing them, before and after {@code GraphicOverlay} switched to drawing from an
+ * immutable snapshot:
+ * <ul>
+ * <li>{@code locked}: the draw iterates the registered graphics while holding the lock, so a
+ * writer waits for a whole draw,</li>
+ * <li>{@code snapshot}: writers publish a new array under the lock, and the draw reads it
+ * without locking.</li>
+ * </ul>
+ * Both registries below mirror the respective {@code GraphicOverlay} code, which is not available
+ * on a plain JVM.  Compare the {@code write} scores of the two groups; each graphic's draw is
+ * simulated with a fixed amount of CPU work.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Group)
+public class OverlayContentionBenchmark {
+    // 1つのグラフィックの描画にかかる処理量（Blackhole.consumeCPU の単位）
+    private static final long DRAW_TOKENS_PER_GRAPHIC = 500;
+
+    @Param({"1", "5", "20"})
+    public int mFaceCount;
+
+    private final LockedRegistry mLocked = new LockedRegistry();
+    private final SnapshotRegistry mSnapshot = new SnapshotRegistry();
+    private final List<Object> mAdded = new ArrayList<>();
+    private final List<Object> mRemoved = new ArrayList<>();
+    private Object[] mFaces;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        mFaces = new Object[mFaceCount + 1];
+        for (int i = 0; i < mFaces.length; i++) {
+            mFaces[i] = new Object();
+        }
+        for (int i = 0; i < mFaceCount; i++) {
+            mLocked.add(mFaces[i]);
+            mSnapshot.add(mFaces[i]);
+        }
+        mNext = mFaceCount;
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(1)
+    public void lockedDraw() {
+        mLocked.draw();
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(1)
+    public void lockedWrite() {
+        mLocked.update(nextBatch(), mRemoved);
+    }
+
+    @Benchmark
+    @Group("snapshot")
+    @GroupThreads(1)
+    public void snapshotDraw() {
+        mSnapshot.draw();
+    }
+
+    @Benchmark
+    @Group("snapshot")
+    @GroupThreads(1)
+    public void snapshotWrite() {
+        mSnapshot.update(nextBatch(), mRemoved);
+    }
+
+    /**
+     * Replaces one face with another, as when a face is lost and a new one found in the same
+     * frame.  Only called from the writer thread.
+     */
+    private List<Object> nextBatch() {
+        mAdded.clear();
+        mRemoved.clear();
+        int removed = (mNext + 1) % mFaces.length;
+        mRemoved.add(mFaces[removed]);
+        mAdded.add(mFaces[mNext]);
+        mNext = removed;
+        return mAdded;
+    }
+
+    private static void drawGraphic(Object graphic) {
+        Blackhole.consumeCPU(DRAW_TOKENS_PER_GRAPHIC);
+    }
+
+    /**
+     * Registry as before the snapshot: the draw holds the lock while iterating.
+     */
+    private static final class LockedRegistry {
+        private final Object mLock = new Object();
+        private final Set<Object> mGraphics = new HashSet<>();
+
+        void add(Object graphic) {
+            synchronized (mLock) {
+                mGraphics.add(graphic);
+            }
+        }
+
+        void update(List<Object> added, List<Object> removed) {
+            synchronized (mLock) {
+                for (int i = 0, size = removed.size(); i < size; i++) {
+                    mGraphics.remove(removed.get(i));
+                }
+                for (int i = 0, size = added.size(); i < size; i++) {
+                    mGraphics.add(added.get(i));
+                }
+            }
+        }
+
+        void draw() {
+            synchronized (mLock) {
+                for (Object graphic : mGraphics) {
+                    drawGraphic(graphic);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registry with an immutable snapshot: the draw does not take the lock.
+     */
+    private static final class SnapshotRegistry {
+        private static final Object[] EMPTY_SNAPSHOT = new Object[0];
+
+        private final Object mLock = new Object();
+        private final Set<Object> mGraphics = new HashSet<>();
+        private volatile Object[] mSnapshot = EMPTY_SNAPSHOT;
+
+        void add(Object graphic) {
+            synchronized (mLock) {
+                if (mGraphics.add(graphic)) {
+                    publishSnapshot();
+                }
+            }
+        }
+
+        void update(List<Object> added, List<Object> removed) {
+            synchronized (mLock) {
+                boolean changed = false;
+                for (int i = 0, size = removed.size(); i < size; i++) {
+                    changed |= mGraphics.remove(removed.get(i));
+                }
+                for (int i = 0, size = added.size(); i < size; i++) {
+                    changed |= mGraphics.add(added.get(i));
+                }
+                if (changed) {
+                    publishSnapshot();
+                }
+            }
+        }
+
+        void draw() {
+            Object[] graphics = mSnapshot;
+            for (Object graphic : graphics) {
+                drawGraphic(graphic);
+            }
+        }
+
+        private void publishSnapshot() {
+            mSnapshot = mGraphics.isEmpty()
+                    ? EMPTY_SNAPSHOT : mGraphics.toArray(new Object[mGraphics.size()]);
+        }
+    }
+}
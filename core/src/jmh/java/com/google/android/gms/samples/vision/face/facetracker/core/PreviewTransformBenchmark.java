@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of mapping points from preview to view coordinates, in points per microsecond: in a
+ * batch, as {@link FaceLayout} does, and one coordinate at a time, as the
+ * {@code GraphicOverlay.Graphic} helpers do.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class PreviewTransformBenchmark {
+    private static final int POINT_COUNT = 1024;
+
+    private final float[] mSource = new float[POINT_COUNT * 2];
+    private final float[] mDestination = new float[POINT_COUNT * 2];
+    private PreviewTransform mTransform;
+
+    @Setup
+    public void setUp() {
+        mTransform = SyntheticFaces.createTransform();
+        Random random = new Random(42);
+        for (int i = 0; i < POINT_COUNT; i++) {
+            mSource[i * 2] = random.nextFloat() * SyntheticFaces.PREVIEW_WIDTH;
+            mSource[i * 2 + 1] = random.nextFloat() * SyntheticFaces.PREVIEW_HEIGHT;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINT_COUNT)
+    public float[] mapPoints() {
+        mTransform.mapPoints(mSource, 0, mDestination, 0, POINT_COUNT);
+        return mDestination;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINT_COUNT)
+    public float[] translatePointByPoint() {
+        for (int i = 0; i < POINT_COUNT * 2; i += 2) {
+            mDestination[i] = mTransform.translateX(mSource[i]);
+            mDestination[i + 1] = mTransform.translateY(mSource[i + 1]);
+        }
+        return mDestination;
+    }
+}
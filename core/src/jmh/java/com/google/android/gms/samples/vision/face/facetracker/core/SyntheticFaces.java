@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.util.Random;
+
+/**
+ * Deterministic face states for the benchmarks: faces of plausible size at random positions in a
+ * 640x480 preview, smiling or not, with every landmark found.
+ */
+final class SyntheticFaces {
+    static final int PREVIEW_WIDTH = 640;
+    static final int PREVIEW_HEIGHT = 480;
+    static final int VIEW_WIDTH = 1080;
+    static final int VIEW_HEIGHT = 1920;
+
+    private static final long SEED = 42;
+
+    private SyntheticFaces() {
+    }
+
+    /**
+     * Transform of the preview onto a portrait phone screen, mirrored as for the front camera.
+     */
+    static PreviewTransform createTransform() {
+        return PreviewTransform.create(PREVIEW_WIDTH, PREVIEW_HEIGHT, VIEW_WIDTH, VIEW_HEIGHT,
+                true);
+    }
+
+    static FaceState[] create(int count) {
+        Random random = new Random(SEED);
+        FaceState[] faces = new FaceState[count];
+        for (int i = 0; i < count; i++) {
+            float width = 40 + random.nextFloat() * 160;
+            float height = width * 1.2f;
+            float left = random.nextFloat() * (PREVIEW_WIDTH - width);
+            float top = random.nextFloat() * (PREVIEW_HEIGHT - height);
+
+            FaceState face = new FaceState();
+            face.set(left, top, width, height, random.nextFloat());
+            for (int type = 0; type < FaceState.LANDMARK_SLOT_COUNT; type++) {
+                face.setLandmark(type, left + random.nextFloat() * width,
+                        top + random.nextFloat() * height);
+            }
+            faces[i] = face;
+        }
+        return faces;
+    }
+
+    /**
+     * Moves every face by a small random step, as between two detections.
+     */
+    static void move(FaceState[] faces, Random random) {
+        for (FaceState face : faces) {
+            float dx = random.nextFloat() * 4 - 2;
+            float dy = random.nextFloat() * 4 - 2;
+            face.moveTo(face.mCenterX + dx, face.mCenterY + dy, face.mWidth, face.mHeight);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Source of the device conditions which the {@link ThrottlingGovernor} reacts to.  Implemented
+ * for the device by the app's {@code AndroidDeviceConditions}; other implementations may be
+ * plugged in, e.g., to drive the governor with scripted conditions in tests.
+ */
+public interface DeviceConditions {
+    /**
+     * Temperature, in degrees Celsius, used to judge thermal pressure, or {@link Float#NaN} if
+     * unknown.
+     */
+    float getTemperatureCelsius();
+
+    /**
+     * Battery level, from 0 to 1, or a negative value if unknown.
+     */
+    float getBatteryLevel();
+
+    /**
+     * Returns true if the device is connected to a power source.
+     */
+    boolean isCharging();
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Positions, in view coordinates, of everything drawn for one face: the center point, the face
+ * box, the eye and mouth boxes, the smile level label, and the sticker above the head.  The
+ * layout is computed from a {@link FaceState} and a {@link PreviewTransform}, and only read by the
+ * renderer.<p>
+ *
+ * All results are kept in fields of this object, so laying out a face does not allocate.  Not
+ * thread safe; each thread which lays out faces should use its own instance.
+ */
+public final class FaceLayout {
+    public static final float FACE_POSITION_RADIUS = 10.0f;
+    public static final float ID_TEXT_SIZE = 40.0f;
+    public static final float ID_Y_OFFSET = 50.0f;
+    public static final float ID_X_OFFSET = -50.0f;
+    public static final float BOX_STROKE_WIDTH = 5.0f;
+
+    /**
+     * Smile probability above which the sticker is shown.
+     */
+    public static final float STICKER_SMILE_THRESHOLD = 0.3f;
+
+    // 顔の中心は、Landmark のスロットの直後に格納する
+    private static final int CENTER_SLOT = FaceState.LANDMARK_SLOT_COUNT;
+    private static final int POINT_COUNT = FaceState.LANDMARK_SLOT_COUNT + 1;
+
+    /**
+     * Landmark positions in view coordinates, as (x, y) pairs indexed by landmark type.  Only
+     * the slots of landmarks found in the laid out face are meaningful.
+     */
+    public final float[] mPoints = new float[POINT_COUNT * 2];
+
+    public float mCenterX;
+    public float mCenterY;
+
+    // 顔領域を覆う長方形
+    public float mLeft;
+    public float mTop;
+    public float mRight;
+    public float mBottom;
+
+    // 目の位置に描く正方形の、中心から辺までの距離
+    public float mEyeBoxOffset;
+    public boolean mHasLeftEye;
+    public boolean mHasRightEye;
+
+    public boolean mHasMouth;
+    public float mMouthLeft;
+    public float mMouthTop;
+    public float mMouthRight;
+    public float mMouthBottom;
+
+    // 笑顔の度合いのラベルの位置（左端とベースライン）
+    public float mLabelX;
+    public float mLabelY;
+
+    public boolean mHasSticker;
+    public float mStickerLeft;
+    public float mStickerTop;
+    public float mStickerRight;
+    public float mStickerBottom;
+
+    /**
+     * Lays out the given face.
+     */
+    public void layout(FaceState face, PreviewTransform transform) {
+        // 目、口などを検知した位置の情報と顔の中心を、種類ごとのスロットに保持し、まとめて画面の座標に変換する
+        // （フロントカメラ、リアカメラの場合の座標の差異も、この変換で吸収している）
+        System.arraycopy(face.mLandmarks, 0, mPoints, 0, face.mLandmarks.length);
+        mPoints[CENTER_SLOT * 2] = face.mCenterX;
+        mPoints[CENTER_SLOT * 2 + 1] = face.mCenterY;
+        transform.mapPoints(mPoints, 0, mPoints, 0, POINT_COUNT);
+
+        // 認識した顔領域の中心
+        mCenterX = mPoints[CENTER_SLOT * 2];
+        mCenterY = mPoints[CENTER_SLOT * 2 + 1];
+
+        // 認識した顔領域の情報を元に、その顔領域を覆う長方形
+        // （ scaleX、scaleY メソッドは、それぞれ、取得した座標を、実際の画面に合わせて調整するメソッド）
+        float xOffset = transform.scaleX(face.mWidth / 2.0f);
+        float yOffset = transform.scaleY(face.mHeight / 2.0f);
+        mLeft = mCenterX - xOffset;
+        mTop = mCenterY - yOffset;
+        mRight = mCenterX + xOffset;
+        mBottom = mCenterY + yOffset;
+
+        // 左目、右目の位置の四角形
+        mEyeBoxOffset = face.mWidth / 5.0f;
+        mHasLeftEye = face.mLandmarkFound[Landmarks.LEFT_EYE];
+        mHasRightEye = face.mLandmarkFound[Landmarks.RIGHT_EYE];
+
+        // 口の位置の四角形
+        mHasMouth = face.mLandmarkFound[Landmarks.LEFT_MOUTH]
+                && face.mLandmarkFound[Landmarks.RIGHT_MOUTH]
+                && face.mLandmarkFound[Landmarks.BOTTOM_MOUTH];
+        if (mHasMouth) {
+            float mouthX1 = mPoints[Landmarks.LEFT_MOUTH * 2];
+            float mouthX2 = mPoints[Landmarks.RIGHT_MOUTH * 2];
+            mMouthLeft = Math.min(mouthX1, mouthX2);
+            mMouthTop = Math.min(mPoints[Landmarks.LEFT_MOUTH * 2 + 1],
+                    mPoints[Landmarks.RIGHT_MOUTH * 2 + 1]);
+            mMouthRight = Math.max(mouthX1, mouthX2);
+            mMouthBottom = mPoints[Landmarks.BOTTOM_MOUTH * 2 + 1];
+        }
+
+        // 笑顔の度合いのラベル
+        mLabelX = mLeft - ID_X_OFFSET;
+        mLabelY = mBottom - ID_Y_OFFSET;
+
+        // 笑顔の度合いが一定レベルを超えたら、頭の位置の上にステッカーを置く
+        mHasSticker = face.mSmilingProbability > STICKER_SMILE_THRESHOLD;
+        if (mHasSticker) {
+            float offsetBottom = transform.scaleY(face.mHeight / 4.0f);
+            float offsetTop = offsetBottom + (mRight - mLeft); // 正方形になるように描画
+            mStickerLeft = mLeft;
+            mStickerTop = mCenterY - offsetTop;
+            mStickerRight = mRight;
+            mStickerBottom = mCenterY - offsetBottom;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Temporal smoothing of one tracked face, applied to each new detection before it is drawn.  The
+ * position, size, and landmark coordinates are each passed through a {@link OneEuroFilter}, which
+ * hides frame-to-frame jitter in the detector output without adding noticeable lag to real
+ * movement.
+ */
+public final class FaceSmoother {
+    /**
+     * Cutoff frequency, in Hz, applied to a face which is standing still.
+     */
+    public static final float DEFAULT_MIN_CUTOFF = 1.0f;
+
+    /**
+     * Speed coefficient, in 1/pixel of the preview, by which the cutoff rises for moving faces.
+     */
+    public static final float DEFAULT_BETA = 0.01f;
+
+    private static final float DERIVATIVE_CUTOFF = 1.0f;
+
+    // 検出時刻の間隔が不明な場合に仮定する、フレームの間隔（秒）
+    private static final float DEFAULT_FRAME_INTERVAL = 1.0f / 30.0f;
+
+    private static final int CENTER_X = 0;
+    private static final int CENTER_Y = 1;
+    private static final int WIDTH = 2;
+    private static final int HEIGHT = 3;
+    private static final int FIRST_LANDMARK = 4;
+    private static final int CHANNEL_COUNT = FIRST_LANDMARK + FaceState.LANDMARK_SLOT_COUNT * 2;
+
+    private final OneEuroFilter mFilter;
+    private long mLastTimestampMillis = -1;
+
+    public FaceSmoother() {
+        this(DEFAULT_MIN_CUTOFF, DEFAULT_BETA);
+    }
+
+    public FaceSmoother(float minCutoff, float beta) {
+        mFilter = new OneEuroFilter(CHANNEL_COUNT, minCutoff, beta, DERIVATIVE_CUTOFF);
+    }
+
+    /**
+     * Smooths the given face state in place.
+     *
+     * @param timestampMillis timestamp of the frame in which the face was detected
+     */
+    public void apply(FaceState state, long timestampMillis) {
+        float dt = (mLastTimestampMillis < 0 || timestampMillis <= mLastTimestampMillis)
+                ? DEFAULT_FRAME_INTERVAL : (timestampMillis - mLastTimestampMillis) / 1000.0f;
+        mLastTimestampMillis = timestampMillis;
+
+        state.mCenterX = mFilter.filter(CENTER_X, state.mCenterX, dt);
+        state.mCenterY = mFilter.filter(CENTER_Y, state.mCenterY, dt);
+        state.mWidth = mFilter.filter(WIDTH, state.mWidth, dt);
+        state.mHeight = mFilter.filter(HEIGHT, state.mHeight, dt);
+
+        for (int type = 0; type < FaceState.LANDMARK_SLOT_COUNT; type++) {
+            int channel = FIRST_LANDMARK + type * 2;
+            if (!state.mLandmarkFound[type]) {
+                // 見失った Landmark は、再び検出された時点から平滑化をやり直す
+                mFilter.reset(channel);
+                mFilter.reset(channel + 1);
+                continue;
+            }
+            state.mLandmarks[type * 2] =
+                    mFilter.filter(channel, state.mLandmarks[type * 2], dt);
+            state.mLandmarks[type * 2 + 1] =
+                    mFilter.filter(channel + 1, state.mLandmarks[type * 2 + 1], dt);
+        }
+    }
+
+    /**
+     * Forgets the history, e.g., when the smoother is reused for another face.
+     */
+    public void reset() {
+        mFilter.reset();
+        mLastTimestampMillis = -1;
+    }
+}
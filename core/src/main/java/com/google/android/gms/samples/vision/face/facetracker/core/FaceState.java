@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Mutable, allocation-free copy of the parts of a detected face which are drawn: its center, size,
+ * smile probability, and landmark positions, all in preview coordinates.  Landmark positions are
+ * kept as (x, y) pairs indexed by landmark type (see {@link Landmarks}).
+ */
+public final class FaceState {
+    public static final int LANDMARK_SLOT_COUNT = Landmarks.SLOT_COUNT;
+
+    public float mCenterX;
+    public float mCenterY;
+    public float mWidth;
+    public float mHeight;
+    public float mSmilingProbability;
+    public final float[] mLandmarks = new float[LANDMARK_SLOT_COUNT * 2];
+    public final boolean[] mLandmarkFound = new boolean[LANDMARK_SLOT_COUNT];
+
+    /**
+     * Sets the face box, given by its top left corner and size, and the smile probability.  All
+     * landmarks are marked as not found; add the detected ones with {@link #setLandmark}.
+     */
+    public void set(float left, float top, float width, float height, float smilingProbability) {
+        mWidth = width;
+        mHeight = height;
+        mCenterX = left + width / 2;
+        mCenterY = top + height / 2;
+        mSmilingProbability = smilingProbability;
+
+        for (int i = 0; i < LANDMARK_SLOT_COUNT; i++) {
+            mLandmarkFound[i] = false;
+        }
+    }
+
+    /**
+     * Stores the position of a detected landmark in the slot for its type.  Unknown types are
+     * ignored.
+     */
+    public void setLandmark(int type, float x, float y) {
+        if (type < 0 || type >= LANDMARK_SLOT_COUNT) {
+            return;
+        }
+        mLandmarks[type * 2] = x;
+        mLandmarks[type * 2 + 1] = y;
+        mLandmarkFound[type] = true;
+    }
+
+    public void set(FaceState other) {
+        mCenterX = other.mCenterX;
+        mCenterY = other.mCenterY;
+        mWidth = other.mWidth;
+        mHeight = other.mHeight;
+        mSmilingProbability = other.mSmilingProbability;
+        System.arraycopy(other.mLandmarks, 0, mLandmarks, 0, mLandmarks.length);
+        System.arraycopy(other.mLandmarkFound, 0, mLandmarkFound, 0, mLandmarkFound.length);
+    }
+
+    /**
+     * Moves and scales the face to the given center and size, carrying the landmarks along.
+     */
+    public void moveTo(float centerX, float centerY, float width, float height) {
+        float scaleX = (mWidth > 0) ? width / mWidth : 1;
+        float scaleY = (mHeight > 0) ? height / mHeight : 1;
+        for (int type = 0; type < LANDMARK_SLOT_COUNT; type++) {
+            mLandmarks[type * 2] = centerX + (mLandmarks[type * 2] - mCenterX) * scaleX;
+            mLandmarks[type * 2 + 1] = centerY + (mLandmarks[type * 2 + 1] - mCenterY) * scaleY;
+        }
+        mCenterX = centerX;
+        mCenterY = centerY;
+        mWidth = width;
+        mHeight = height;
+    }
+}
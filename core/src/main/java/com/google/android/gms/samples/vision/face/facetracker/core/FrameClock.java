@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Offset from the uptime clock, which the overlay is drawn by, to the clock of the frame
+ * timestamps, which the motion predictors are updated by.  Tracking by the frame timestamps makes
+ * a replayed session track exactly like the live one, however fast it is replayed; the offset
+ * lets the draw extrapolate to "now" on the same clock.<p>
+ *
+ * The offset is fixed at the first frame of a session.  It only moves forward when a frame
+ * arrives ahead of the clock, e.g., when a recording is replayed faster than real time, so that
+ * the draw time never falls behind the latest detection.  Not thread safe.
+ */
+public final class FrameClock {
+    private long mOffsetMillis;
+    private boolean mStarted;
+
+    /**
+     * Starts a new session, e.g., when a new frame source starts.
+     */
+    public void reset() {
+        mStarted = false;
+        mOffsetMillis = 0;
+    }
+
+    /**
+     * Records that a frame with the given timestamp is being processed at the given uptime.
+     */
+    public void onFrame(long frameTimestampMillis, long uptimeMillis) {
+        long offset = frameTimestampMillis - uptimeMillis;
+        if (!mStarted || offset > mOffsetMillis) {
+            mOffsetMillis = offset;
+            mStarted = true;
+        }
+    }
+
+    /**
+     * Returns the value to add to an uptime to get the time on the frame timestamp clock.
+     */
+    public long getOffsetMillis() {
+        return mOffsetMillis;
+    }
+}
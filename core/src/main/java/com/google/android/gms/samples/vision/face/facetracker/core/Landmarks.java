@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Landmark types, with the same values as the constants of
+ * {@code com.google.android.gms.vision.face.Landmark}, so that the types reported by the detector
+ * can be used as slot indices directly.
+ */
+public final class Landmarks {
+    public static final int BOTTOM_MOUTH = 0;
+    public static final int LEFT_CHEEK = 1;
+    public static final int LEFT_EAR_TIP = 2;
+    public static final int LEFT_EAR = 3;
+    public static final int LEFT_EYE = 4;
+    public static final int LEFT_MOUTH = 5;
+    public static final int NOSE_BASE = 6;
+    public static final int RIGHT_CHEEK = 7;
+    public static final int RIGHT_EAR_TIP = 8;
+    public static final int RIGHT_EAR = 9;
+    public static final int RIGHT_EYE = 10;
+    public static final int RIGHT_MOUTH = 11;
+
+    // Landmark の種類（BOTTOM_MOUTH = 0 〜 RIGHT_MOUTH = 11）ごとにスロットを設ける
+    public static final int SLOT_COUNT = RIGHT_MOUTH + 1;
+
+    private Landmarks() {
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Constant-velocity Kalman filter over the center and size of one tracked face, used to
+ * extrapolate the face between detections so that the overlay can be drawn at the display refresh
+ * rate rather than the detection rate.<p>
+ *
+ * Each of the four values (center x, center y, width, height) is modeled independently with a
+ * position and velocity, driven by white-noise acceleration.  All state is kept in primitive
+ * arrays, so updating and predicting do not allocate.  Not thread safe.
+ */
+public final class MotionPredictor {
+    public static final int CENTER_X = 0;
+    public static final int CENTER_Y = 1;
+    public static final int WIDTH = 2;
+    public static final int HEIGHT = 3;
+    public static final int DIMENSION_COUNT = 4;
+
+    /**
+     * Immutable tuning of a {@link MotionPredictor}.
+     */
+    public static final class Config {
+        public static final Config DEFAULT = new Config(true, 500.0f, 4.0f, 100);
+
+        final boolean mEnabled;
+        final float mProcessNoise;
+        final float mMeasurementNoise;
+        final long mMaxExtrapolationMillis;
+
+        /**
+         * @param enabled                whether faces are extrapolated at all
+         * @param processNoise           variance of the acceleration, in (pixels/s^2)^2 per second
+         * @param measurementNoise       variance of a detected value, in pixels^2
+         * @param maxExtrapolationMillis how far past the last detection faces are extrapolated
+         */
+        public Config(boolean enabled, float processNoise, float measurementNoise,
+               long maxExtrapolationMillis) {
+            mEnabled = enabled;
+            mProcessNoise = processNoise;
+            mMeasurementNoise = measurementNoise;
+            mMaxExtrapolationMillis = maxExtrapolationMillis;
+        }
+    }
+
+    private Config mConfig = Config.DEFAULT;
+
+    // 各値の位置・速度と、その共分散行列 [[p00, p01], [p01, p11]]
+    private final float[] mPosition = new float[DIMENSION_COUNT];
+    private final float[] mVelocity = new float[DIMENSION_COUNT];
+    private final float[] mP00 = new float[DIMENSION_COUNT];
+    private final float[] mP01 = new float[DIMENSION_COUNT];
+    private final float[] mP11 = new float[DIMENSION_COUNT];
+
+    private boolean mInitialized;
+    private long mLastUpdateMillis;
+    private float mLastInnovation;
+
+    public void setConfig(Config config) {
+        mConfig = config;
+    }
+
+    public Config getConfig() {
+        return mConfig;
+    }
+
+    /**
+     * Forgets the tracked motion, e.g., when the predictor is reused for another face.
+     */
+    public void reset() {
+        mInitialized = false;
+        mLastInnovation = 0.0f;
+    }
+
+    /**
+     * Corrects the filter with a new detection.
+     *
+     * @param timestampMillis time of the detection, on the same clock as {@link #predict}
+     */
+    public void update(float centerX, float centerY, float width, float height,
+                       long timestampMillis) {
+        if (!mInitialized) {
+            initialize(CENTER_X, centerX);
+            initialize(CENTER_Y, centerY);
+            initialize(WIDTH, width);
+            initialize(HEIGHT, height);
+            mInitialized = true;
+            mLastUpdateMillis = timestampMillis;
+            mLastInnovation = 0.0f;
+            return;
+        }
+
+        float dt = Math.max(timestampMillis - mLastUpdateMillis, 0) / 1000.0f;
+        mLastUpdateMillis = timestampMillis;
+
+        float innovationX = correct(CENTER_X, centerX, dt);
+        float innovationY = correct(CENTER_Y, centerY, dt);
+        correct(WIDTH, width, dt);
+        correct(HEIGHT, height, dt);
+        mLastInnovation = (float) Math.sqrt(innovationX * innovationX + innovationY * innovationY);
+    }
+
+    /**
+     * Extrapolates the center and size to the given time.  Beyond the configured extrapolation
+     * limit the face is held where it was predicted to be at the limit, so that it does not jump
+     * back while detections are being skipped.
+     *
+     * @param out receives the predicted values, indexed by {@link #CENTER_X} etc.
+     * @return true if {@code out} was written, false if prediction is disabled or nothing has
+     * been detected yet
+     */
+    public boolean predict(long timestampMillis, float[] out) {
+        Config config = mConfig;
+        if (!config.mEnabled || !mInitialized) {
+            return false;
+        }
+
+        long elapsed = Math.max(0,
+                Math.min(timestampMillis - mLastUpdateMillis, config.mMaxExtrapolationMillis));
+        float dt = elapsed / 1000.0f;
+        for (int i = 0; i < DIMENSION_COUNT; i++) {
+            out[i] = mPosition[i] + mVelocity[i] * dt;
+        }
+        return true;
+    }
+
+    /**
+     * Returns true while the prediction for the given time still changes with time, i.e., the
+     * face is being extrapolated and has not yet reached the extrapolation limit.
+     */
+    public boolean isExtrapolating(long timestampMillis) {
+        Config config = mConfig;
+        long elapsed = timestampMillis - mLastUpdateMillis;
+        return config.mEnabled && mInitialized
+                && elapsed >= 0 && elapsed < config.mMaxExtrapolationMillis;
+    }
+
+    public long getLastUpdateMillis() {
+        return mLastUpdateMillis;
+    }
+
+    /**
+     * Distance, in preview pixels, between the predicted and the detected center at the most
+     * recent update.
+     */
+    public float getLastInnovation() {
+        return mLastInnovation;
+    }
+
+    /**
+     * Copies the filter state: for each dimension, the position, velocity, and the position and
+     * velocity variances, i.e., 4 values per dimension.
+     */
+    public void getState(float[] out) {
+        for (int i = 0; i < DIMENSION_COUNT; i++) {
+            out[i * 4] = mPosition[i];
+            out[i * 4 + 1] = mVelocity[i];
+            out[i * 4 + 2] = mP00[i];
+            out[i * 4 + 3] = mP11[i];
+        }
+    }
+
+    private void initialize(int i, float value) {
+        mPosition[i] = value;
+        mVelocity[i] = 0.0f;
+        mP00[i] = mConfig.mMeasurementNoise;
+        mP01[i] = 0.0f;
+        // 初速は不明なので、大きな分散から始める
+        mP11[i] = mConfig.mProcessNoise;
+    }
+
+    /**
+     * Runs the predict and update steps of one dimension, returning the innovation.
+     */
+    private float correct(int i, float measurement, float dt) {
+        float q = mConfig.mProcessNoise;
+        float r = mConfig.mMeasurementNoise;
+
+        // 予測: x = F x, P = F P F^T + Q
+        mPosition[i] += mVelocity[i] * dt;
+        float dt2 = dt * dt;
+        float p00 = mP00[i] + 2 * dt * mP01[i] + dt2 * mP11[i] + q * dt2 * dt / 3;
+        float p01 = mP01[i] + dt * mP11[i] + q * dt2 / 2;
+        float p11 = mP11[i] + q * dt;
+
+        // 更新
+        float innovation = measurement - mPosition[i];
+        float s = p00 + r;
+        float k0 = p00 / s;
+        float k1 = p01 / s;
+        mPosition[i] += k0 * innovation;
+        mVelocity[i] += k1 * innovation;
+        mP00[i] = (1 - k0) * p00;
+        mP01[i] = (1 - k0) * p01;
+        mP11[i] = p11 - k1 * p01;
+        return innovation;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Bank of One Euro filters (Casiez et al., CHI 2012), one per channel, sharing one set of
+ * parameters.  A One Euro filter is a low-pass filter whose cutoff frequency rises with the speed
+ * of the signal: slow movements are smoothed strongly to remove jitter, while fast movements are
+ * followed with little lag.<p>
+ *
+ * All state is kept in primitive arrays, so filtering does not allocate.
+ */
+public final class OneEuroFilter {
+    private final float mMinCutoff;
+    private final float mBeta;
+    private final float mDerivativeCutoff;
+
+    private final float[] mValues;
+    private final float[] mDerivatives;
+    private final boolean[] mInitialized;
+
+    /**
+     * @param channelCount     number of independent signals filtered by this bank
+     * @param minCutoff        cutoff frequency, in Hz, when the signal is not moving
+     * @param beta             how quickly the cutoff frequency rises with the speed of the signal
+     * @param derivativeCutoff cutoff frequency, in Hz, for the estimated speed
+     */
+    public OneEuroFilter(int channelCount, float minCutoff, float beta, float derivativeCutoff) {
+        mMinCutoff = minCutoff;
+        mBeta = beta;
+        mDerivativeCutoff = derivativeCutoff;
+        mValues = new float[channelCount];
+        mDerivatives = new float[channelCount];
+        mInitialized = new boolean[channelCount];
+    }
+
+    /**
+     * Filters the next sample of a channel.
+     *
+     * @param dt seconds since the previous sample of this channel
+     * @return the filtered value
+     */
+    public float filter(int channel, float value, float dt) {
+        if (!mInitialized[channel]) {
+            mValues[channel] = value;
+            mDerivatives[channel] = 0.0f;
+            mInitialized[channel] = true;
+            return value;
+        }
+        if (dt <= 0.0f) {
+            return mValues[channel];
+        }
+
+        float derivative = (value - mValues[channel]) / dt;
+        float smoothedDerivative = mDerivatives[channel]
+                + alpha(mDerivativeCutoff, dt) * (derivative - mDerivatives[channel]);
+        mDerivatives[channel] = smoothedDerivative;
+
+        float cutoff = mMinCutoff + mBeta * Math.abs(smoothedDerivative);
+        float filtered = mValues[channel] + alpha(cutoff, dt) * (value - mValues[channel]);
+        mValues[channel] = filtered;
+        return filtered;
+    }
+
+    /**
+     * Forgets the history of a channel, so that its next sample is passed through unfiltered.
+     */
+    public void reset(int channel) {
+        mInitialized[channel] = false;
+    }
+
+    /**
+     * Forgets the history of all channels.
+     */
+    public void reset() {
+        for (int i = 0; i < mInitialized.length; i++) {
+            mInitialized[i] = false;
+        }
+    }
+
+    private static float alpha(float cutoff, float dt) {
+        float tau = 1.0f / (2.0f * (float) Math.PI * cutoff);
+        return 1.0f / (1.0f + tau / dt);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Immutable mapping from the preview's coordinate system to the view coordinate system: a
+ * scale from the preview size to the view size, mirrored horizontally for the front-facing
+ * camera.
+ */
+public final class PreviewTransform {
+    public static final PreviewTransform IDENTITY = new PreviewTransform(1.0f, 1.0f, false, 0);
+
+    private final float mScaleX;
+    private final float mScaleY;
+    // x' = mTranslateScaleX * x + mTranslateOffsetX (ミラーリングを含めた x 座標の変換)
+    private final float mTranslateScaleX;
+    private final float mTranslateOffsetX;
+
+    public PreviewTransform(float scaleX, float scaleY, boolean mirrored, int viewWidth) {
+        mScaleX = scaleX;
+        mScaleY = scaleY;
+        mTranslateScaleX = mirrored ? -scaleX : scaleX;
+        mTranslateOffsetX = mirrored ? viewWidth : 0.0f;
+    }
+
+    /**
+     * Returns the transform which stretches a preview of the given size over a view of the given
+     * size.  While either size is unknown (0), the preview is not scaled.
+     */
+    public static PreviewTransform create(int previewWidth, int previewHeight, int viewWidth,
+                                          int viewHeight, boolean mirrored) {
+        float widthScaleFactor = 1.0f;
+        float heightScaleFactor = 1.0f;
+        if ((previewWidth != 0) && (previewHeight != 0) && (viewWidth != 0)
+                && (viewHeight != 0)) {
+            widthScaleFactor = (float) viewWidth / (float) previewWidth;
+            heightScaleFactor = (float) viewHeight / (float) previewHeight;
+        }
+        return new PreviewTransform(widthScaleFactor, heightScaleFactor, mirrored, viewWidth);
+    }
+
+    public float scaleX(float horizontal) {
+        return horizontal * mScaleX;
+    }
+
+    public float scaleY(float vertical) {
+        return vertical * mScaleY;
+    }
+
+    public float translateX(float x) {
+        return x * mTranslateScaleX + mTranslateOffsetX;
+    }
+
+    public float translateY(float y) {
+        return y * mScaleY;
+    }
+
+    /**
+     * Converts {@code pointCount} (x, y) pairs from preview coordinates in {@code src} to
+     * view coordinates in {@code dst}.  The arrays may be the same.
+     */
+    public void mapPoints(float[] src, int srcOffset, float[] dst, int dstOffset,
+                          int pointCount) {
+        for (int i = 0; i < pointCount * 2; i += 2) {
+            dst[dstOffset + i] = src[srcOffset + i] * mTranslateScaleX + mTranslateOffsetX;
+            dst[dstOffset + i + 1] = src[srcOffset + i + 1] * mScaleY;
+        }
+    }
+}
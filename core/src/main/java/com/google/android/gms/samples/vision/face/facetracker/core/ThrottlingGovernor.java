@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Steps detection down through defined tiers as the device heats up or its battery runs low, and
+ * back up as conditions recover.  Each tier caps the detection rate and resolution and restricts
+ * the detector mode; the listener feeds the tier into the detector configuration.<p>
+ *
+ * The conditions are polled periodically through a pluggable {@link DeviceConditions}, and every
+ * tier transition is recorded with its timestamp and the conditions which caused it.  A tier is
+ * left downward only once the temperature has fallen a margin below the tier's threshold, so that
+ * the tier does not flap around a threshold.<p>
+ *
+ * Time and polling are injected through a {@link Clock} and a {@link Scheduler}, so that the
+ * governor runs on the plain JVM; on Android they are backed by {@code SystemClock} and a
+ * {@code Handler}.  All methods except {@link #getTier()} and {@link #getTransitions()} must be
+ * called on the scheduler's thread.
+ */
+public final class ThrottlingGovernor {
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 10000;
+
+    // 各段階に入る温度（℃）と、段階を下げるのに必要な温度の低下幅
+    static final float[] ENTER_TEMPERATURES =
+            {Float.NEGATIVE_INFINITY, 40.0f, 43.0f, 46.0f};
+    static final float HYSTERESIS = 2.0f;
+    // 充電していないときに、段階を上げるバッテリー残量
+    static final float LOW_BATTERY = 0.15f;
+    static final float CRITICAL_BATTERY = 0.05f;
+    static final int MAX_TRANSITIONS = 32;
+
+    /**
+     * Immutable throttling tier.
+     */
+    public static final class Tier {
+        public final int mLevel;
+        public final String mName;
+        // 検出の最短間隔（検出レートの上限）と、検出する画像の最大サイズ
+        public final long mMinDetectionIntervalMillis;
+        public final int mMaxDetectionWidth;
+        public final int mMaxDetectionHeight;
+        // 検出器のモードの制限
+        public final boolean mFastModeOnly;
+        public final boolean mProminentFaceOnly;
+
+        Tier(int level, String name, long minDetectionIntervalMillis, int maxDetectionWidth,
+             int maxDetectionHeight, boolean fastModeOnly, boolean prominentFaceOnly) {
+            mLevel = level;
+            mName = name;
+            mMinDetectionIntervalMillis = minDetectionIntervalMillis;
+            mMaxDetectionWidth = maxDetectionWidth;
+            mMaxDetectionHeight = maxDetectionHeight;
+            mFastModeOnly = fastModeOnly;
+            mProminentFaceOnly = prominentFaceOnly;
+        }
+
+        @Override
+        public String toString() {
+            return mName;
+        }
+    }
+
+    public static final Tier NORMAL = new Tier(0, "normal", 0, Integer.MAX_VALUE,
+            Integer.MAX_VALUE, false, false);
+    public static final Tier WARM = new Tier(1, "warm", 66, 480, 360, false, false);
+    public static final Tier HOT = new Tier(2, "hot", 200, 320, 240, true, false);
+    public static final Tier CRITICAL = new Tier(3, "critical", 500, 240, 180, true, true);
+    private static final Tier[] TIERS = {NORMAL, WARM, HOT, CRITICAL};
+
+    /**
+     * Immutable record of one tier transition.
+     */
+    public static final class Transition {
+        // Clock#currentTimeMillis() の時刻
+        public final long mTimeMillis;
+        public final Tier mFrom;
+        public final Tier mTo;
+        // 遷移前の段階にとどまっていた時間
+        public final long mMillisInPreviousTier;
+        public final float mTemperatureCelsius;
+        public final float mBatteryLevel;
+        public final boolean mCharging;
+
+        Transition(long timeMillis, Tier from, Tier to, long millisInPreviousTier,
+                   float temperatureCelsius, float batteryLevel, boolean charging) {
+            mTimeMillis = timeMillis;
+            mFrom = from;
+            mTo = to;
+            mMillisInPreviousTier = millisInPreviousTier;
+            mTemperatureCelsius = temperatureCelsius;
+            mBatteryLevel = batteryLevel;
+            mCharging = charging;
+        }
+
+        @Override
+        public String toString() {
+            return mTimeMillis + ": " + mFrom + " -> " + mTo + " after " + mMillisInPreviousTier
+                    + " ms (temperature " + mTemperatureCelsius + ", battery " + mBatteryLevel
+                    + (mCharging ? ", charging)" : ")");
+        }
+    }
+
+    /**
+     * Source of time for the governor.
+     */
+    public interface Clock {
+        /**
+         * Monotonic time, in milliseconds, used to measure how long a tier lasted.
+         */
+        long elapsedRealtimeMillis();
+
+        /**
+         * Wall clock time, in milliseconds since the epoch, used to timestamp transitions.
+         */
+        long currentTimeMillis();
+    }
+
+    /**
+     * Runs the periodic poll, e.g., on an Android {@code Handler}.
+     */
+    public interface Scheduler {
+        /**
+         * Runs {@code task} once, after {@code delayMillis}, on the scheduler's thread.
+         */
+        void schedule(Runnable task, long delayMillis);
+
+        /**
+         * Cancels every pending run of {@code task}.
+         */
+        void cancel(Runnable task);
+    }
+
+    /**
+     * Receives tier changes, on the scheduler's thread.
+     */
+    public interface Listener {
+        /**
+         * @param transition the transition, whose {@code mTo} is the new tier
+         */
+        void onTierChanged(Transition transition);
+    }
+
+    private final DeviceConditions mConditions;
+    private final Clock mClock;
+    private final Scheduler mScheduler;
+    private final Listener mListener;
+    private final long mPollIntervalMillis;
+
+    private final Runnable mPoll = new Runnable() {
+        @Override
+        public void run() {
+            evaluate();
+            mScheduler.schedule(this, mPollIntervalMillis);
+        }
+    };
+
+    // 以下はスケジューラーのスレッドからのみ変更する
+    private volatile Tier mTier = NORMAL;
+    private int mThermalLevel;
+    private final List<Transition> mTransitions = new ArrayList<>();
+    private long mTierSinceMillis;
+
+    public ThrottlingGovernor(DeviceConditions conditions, Clock clock, Scheduler scheduler,
+                              Listener listener) {
+        this(conditions, clock, scheduler, listener, DEFAULT_POLL_INTERVAL_MILLIS);
+    }
+
+    public ThrottlingGovernor(DeviceConditions conditions, Clock clock, Scheduler scheduler,
+                              Listener listener, long pollIntervalMillis) {
+        mConditions = conditions;
+        mClock = clock;
+        mScheduler = scheduler;
+        mListener = listener;
+        mPollIntervalMillis = pollIntervalMillis;
+        mTierSinceMillis = clock.elapsedRealtimeMillis();
+    }
+
+    /**
+     * Starts polling the conditions, evaluating them right away.
+     */
+    public void start() {
+        mScheduler.cancel(mPoll);
+        mScheduler.schedule(mPoll, 0);
+    }
+
+    public void stop() {
+        mScheduler.cancel(mPoll);
+    }
+
+    public Tier getTier() {
+        return mTier;
+    }
+
+    /**
+     * Returns the most recent tier transitions, oldest first.
+     */
+    public synchronized List<Transition> getTransitions() {
+        return new ArrayList<>(mTransitions);
+    }
+
+    /**
+     * Reads the conditions and moves to the tier they call for, notifying the listener of a
+     * change.  Called by the periodic poll; may also be called directly on the scheduler's
+     * thread.
+     */
+    public void evaluate() {
+        float temperature = mConditions.getTemperatureCelsius();
+        float batteryLevel = mConditions.getBatteryLevel();
+        boolean charging = mConditions.isCharging();
+
+        // 温度による段階（上げるときは閾値で、下げるときは閾値より HYSTERESIS 低い温度で）
+        if (Float.isNaN(temperature)) {
+            mThermalLevel = 0;
+        } else {
+            while (mThermalLevel < TIERS.length - 1
+                    && temperature >= ENTER_TEMPERATURES[mThermalLevel + 1]) {
+                mThermalLevel++;
+            }
+            while (mThermalLevel > 0
+                    && temperature < ENTER_TEMPERATURES[mThermalLevel] - HYSTERESIS) {
+                mThermalLevel--;
+            }
+        }
+
+        // バッテリー残量による段階
+        int batteryLevelTier = 0;
+        if (!charging && batteryLevel >= 0.0f) {
+            if (batteryLevel <= CRITICAL_BATTERY) {
+                batteryLevelTier = HOT.mLevel;
+            } else if (batteryLevel <= LOW_BATTERY) {
+                batteryLevelTier = WARM.mLevel;
+            }
+        }
+
+        Tier tier = TIERS[Math.max(mThermalLevel, batteryLevelTier)];
+        Tier previous = mTier;
+        if (tier == previous) {
+            return;
+        }
+
+        long now = mClock.elapsedRealtimeMillis();
+        Transition transition = new Transition(mClock.currentTimeMillis(), previous, tier,
+                now - mTierSinceMillis, temperature, batteryLevel, charging);
+        synchronized (this) {
+            if (mTransitions.size() == MAX_TRANSITIONS) {
+                mTransitions.remove(0);
+            }
+            mTransitions.add(transition);
+        }
+        mTier = tier;
+        mTierSinceMillis = now;
+        mListener.onTierChanged(transition);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * State of one tracked face between detections: the most recently detected {@link FaceState} and
+ * a {@link MotionPredictor} which extrapolates it to the draw time.  Not thread safe.
+ */
+public final class TrackedFace {
+    private final FaceState mState = new FaceState();
+    private boolean mHasState;
+
+    private final MotionPredictor mPredictor = new MotionPredictor();
+    private final float[] mPrediction = new float[MotionPredictor.DIMENSION_COUNT];
+
+    /**
+     * Forgets the face, e.g., when the track is reused for another face.
+     */
+    public void reset() {
+        mHasState = false;
+        mPredictor.reset();
+    }
+
+    /**
+     * Updates the face from a new detection.
+     *
+     * @param timestampMillis time of the detection, on the same clock as {@link #predict}
+     * @param config          how to extrapolate the face until the next detection
+     * @return distance, in preview pixels, between the predicted and the detected face center
+     */
+    public float update(FaceState state, long timestampMillis, MotionPredictor.Config config) {
+        mState.set(state);
+        mHasState = true;
+        mPredictor.setConfig(config);
+        mPredictor.update(state.mCenterX, state.mCenterY, state.mWidth, state.mHeight,
+                timestampMillis);
+        return mPredictor.getLastInnovation();
+    }
+
+    /**
+     * Copies the face, extrapolated to the given time if prediction is enabled, into {@code out}.
+     *
+     * @return false if nothing has been detected yet, in which case {@code out} is unchanged
+     */
+    public boolean predict(long timestampMillis, FaceState out) {
+        if (!mHasState) {
+            return false;
+        }
+        out.set(mState);
+        if (mPredictor.predict(timestampMillis, mPrediction)) {
+            out.moveTo(mPrediction[MotionPredictor.CENTER_X],
+                    mPrediction[MotionPredictor.CENTER_Y],
+                    mPrediction[MotionPredictor.WIDTH],
+                    mPrediction[MotionPredictor.HEIGHT]);
+        }
+        return true;
+    }
+
+    /**
+     * Returns true while the face drawn at the given time still moves with time; see
+     * {@link MotionPredictor#isExtrapolating}.
+     */
+    public boolean isExtrapolating(long timestampMillis) {
+        return mPredictor.isExtrapolating(timestampMillis);
+    }
+
+    /**
+     * Copies the motion predictor state into {@code out}; see {@link MotionPredictor#getState}.
+     */
+    public void getPredictorState(float[] out) {
+        mPredictor.getState(out);
+    }
+}
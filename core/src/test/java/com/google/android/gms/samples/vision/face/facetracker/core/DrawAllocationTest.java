@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that the per-frame work of drawing a face, i.e., what {@code FaceGraphic.draw} does apart
+ * from the canvas calls, allocates nothing.
+ */
+public class DrawAllocationTest {
+    private static final int FRAME_COUNT = 10000;
+
+    private com.sun.management.ThreadMXBean mThreadBean;
+
+    private final TrackedFace mTrack = new TrackedFace();
+    private final FaceState mDrawState = new FaceState();
+    private final FaceLayout mLayout = new FaceLayout();
+    private boolean mExtrapolating;
+    private final PreviewTransform mTransform =
+            PreviewTransform.create(640, 480, 1080, 1920, true);
+
+    @Before
+    public void setUp() {
+        Object bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        mThreadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(mThreadBean.isThreadAllocatedMemorySupported());
+        mThreadBean.setThreadAllocatedMemoryEnabled(true);
+
+        FaceState face = new FaceState();
+        face.set(100, 80, 120, 140, 0.9f);
+        for (int type = 0; type < FaceState.LANDMARK_SLOT_COUNT; type++) {
+            face.setLandmark(type, 110 + type * 8, 100 + type * 9);
+        }
+        mTrack.update(face, 0, MotionPredictor.Config.DEFAULT);
+        face.moveTo(face.mCenterX + 5, face.mCenterY + 3, face.mWidth, face.mHeight);
+        mTrack.update(face, 33, MotionPredictor.Config.DEFAULT);
+    }
+
+    @Test
+    public void drawingAFaceDoesNotAllocate() {
+        // 1回目は、クラスの初期化などによる割り当てを済ませるために実行する
+        drawFrames(FRAME_COUNT);
+
+        // 計測自体による割り当てを差し引くため、空の区間を先に計測しておく
+        long start = allocatedBytes();
+        long overhead = allocatedBytes() - start;
+
+        long before = allocatedBytes();
+        drawFrames(FRAME_COUNT);
+        long allocated = allocatedBytes() - before;
+
+        assertEquals(0, Math.max(0, allocated - overhead));
+    }
+
+    private void drawFrames(int count) {
+        for (int i = 0; i < count; i++) {
+            long now = 33 + i % 150;
+            mTrack.predict(now, mDrawState);
+            mLayout.layout(mDrawState, mTransform);
+            mExtrapolating = mTrack.isExtrapolating(now);
+        }
+    }
+
+    private long allocatedBytes() {
+        return mThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks {@link FaceLayout} against the arithmetic that {@code FaceGraphic.draw} did inline on
+ * the GMS face before the layout was factored out, for random faces on a mirrored and an
+ * unmirrored view.
+ */
+public class FaceLayoutTest {
+    private static final float DELTA = 1e-3f;
+    private static final int FACE_COUNT = 200;
+
+    @Test
+    public void matchesTheOriginalDrawArithmetic() {
+        Random random = new Random(7);
+        FaceLayout layout = new FaceLayout();
+        for (boolean mirrored : new boolean[]{false, true}) {
+            PreviewTransform transform = PreviewTransform.create(640, 480, 1080, 1920, mirrored);
+            for (int i = 0; i < FACE_COUNT; i++) {
+                FaceState face = randomFace(random);
+                layout.layout(face, transform);
+                assertMatchesOriginal(face, transform, layout);
+            }
+        }
+    }
+
+    @Test
+    public void omitsMouthUnlessAllThreeMouthLandmarksWereFound() {
+        FaceState face = new FaceState();
+        face.set(100, 100, 80, 100, 0.0f);
+        face.setLandmark(Landmarks.LEFT_MOUTH, 110, 170);
+        face.setLandmark(Landmarks.RIGHT_MOUTH, 160, 172);
+        FaceLayout layout = new FaceLayout();
+
+        layout.layout(face, PreviewTransform.IDENTITY);
+        assertEquals(false, layout.mHasMouth);
+
+        face.setLandmark(Landmarks.BOTTOM_MOUTH, 135, 185);
+        layout.layout(face, PreviewTransform.IDENTITY);
+        assertEquals(true, layout.mHasMouth);
+    }
+
+    @Test
+    public void showsTheStickerOnlyAboveTheSmileThreshold() {
+        FaceState face = new FaceState();
+        FaceLayout layout = new FaceLayout();
+
+        face.set(100, 100, 80, 100, FaceLayout.STICKER_SMILE_THRESHOLD);
+        layout.layout(face, PreviewTransform.IDENTITY);
+        assertEquals(false, layout.mHasSticker);
+
+        face.set(100, 100, 80, 100, FaceLayout.STICKER_SMILE_THRESHOLD + 0.01f);
+        layout.layout(face, PreviewTransform.IDENTITY);
+        assertEquals(true, layout.mHasSticker);
+        // 顔の幅と同じ高さの正方形
+        assertEquals(layout.mStickerRight - layout.mStickerLeft,
+                layout.mStickerBottom - layout.mStickerTop, DELTA);
+    }
+
+    private static FaceState randomFace(Random random) {
+        float width = 40 + random.nextFloat() * 200;
+        float height = width * (1.0f + random.nextFloat() * 0.4f);
+        float left = random.nextFloat() * 600 - 50;
+        float top = random.nextFloat() * 450 - 50;
+        FaceState face = new FaceState();
+        face.set(left, top, width, height, random.nextFloat());
+        for (int type = 0; type < FaceState.LANDMARK_SLOT_COUNT; type++) {
+            if (random.nextFloat() < 0.8f) {
+                face.setLandmark(type, left + random.nextFloat() * width,
+                        top + random.nextFloat() * height);
+            }
+        }
+        return face;
+    }
+
+    /**
+     * The original draw code, with the GMS face replaced by its top left corner, size and
+     * landmark positions.
+     */
+    private static void assertMatchesOriginal(FaceState face, PreviewTransform transform,
+                                              FaceLayout layout) {
+        float positionX = face.mCenterX - face.mWidth / 2;
+        float positionY = face.mCenterY - face.mHeight / 2;
+
+        float centerX = transform.translateX(positionX + face.mWidth / 2);
+        float centerY = transform.translateY(positionY + face.mHeight / 2);
+        assertEquals(centerX, layout.mCenterX, DELTA);
+        assertEquals(centerY, layout.mCenterY, DELTA);
+
+        float xOffset = transform.scaleX(face.mWidth / 2.0f);
+        float yOffset = transform.scaleY(face.mHeight / 2.0f);
+        float left = centerX - xOffset;
+        float top = centerY - yOffset;
+        float right = centerX + xOffset;
+        float bottom = centerY + yOffset;
+        assertEquals(left, layout.mLeft, DELTA);
+        assertEquals(top, layout.mTop, DELTA);
+        assertEquals(right, layout.mRight, DELTA);
+        assertEquals(bottom, layout.mBottom, DELTA);
+
+        float eyeOffset = face.mWidth / 5.0f;
+        assertEquals(eyeOffset, layout.mEyeBoxOffset, DELTA);
+        assertEye(face, transform, layout, Landmarks.LEFT_EYE, layout.mHasLeftEye);
+        assertEye(face, transform, layout, Landmarks.RIGHT_EYE, layout.mHasRightEye);
+
+        boolean hasMouth = face.mLandmarkFound[Landmarks.LEFT_MOUTH]
+                && face.mLandmarkFound[Landmarks.RIGHT_MOUTH]
+                && face.mLandmarkFound[Landmarks.BOTTOM_MOUTH];
+        assertEquals(hasMouth, layout.mHasMouth);
+        if (hasMouth) {
+            float leftMouthY = landmarkY(face, Landmarks.LEFT_MOUTH);
+            float rightMouthY = landmarkY(face, Landmarks.RIGHT_MOUTH);
+            float mouthX1 = transform.translateX(landmarkX(face, Landmarks.LEFT_MOUTH));
+            float mouthTop = (leftMouthY < rightMouthY)
+                    ? transform.translateY(leftMouthY) : transform.translateY(rightMouthY);
+            float mouthX2 = transform.translateX(landmarkX(face, Landmarks.RIGHT_MOUTH));
+            float mouthBottom = transform.translateY(landmarkY(face, Landmarks.BOTTOM_MOUTH));
+            assertEquals(Math.min(mouthX1, mouthX2), layout.mMouthLeft, DELTA);
+            assertEquals(mouthTop, layout.mMouthTop, DELTA);
+            assertEquals(Math.max(mouthX1, mouthX2), layout.mMouthRight, DELTA);
+            assertEquals(mouthBottom, layout.mMouthBottom, DELTA);
+        }
+
+        assertEquals(left - FaceLayout.ID_X_OFFSET, layout.mLabelX, DELTA);
+        assertEquals(bottom - FaceLayout.ID_Y_OFFSET, layout.mLabelY, DELTA);
+
+        boolean hasSticker = face.mSmilingProbability > 0.3f;
+        assertEquals(hasSticker, layout.mHasSticker);
+        if (hasSticker) {
+            float offsetBottom = transform.scaleY(face.mHeight / 4.0f);
+            float offsetTop = offsetBottom + (right - left);
+            assertEquals(left, layout.mStickerLeft, DELTA);
+            assertEquals(centerY - offsetTop, layout.mStickerTop, DELTA);
+            assertEquals(right, layout.mStickerRight, DELTA);
+            assertEquals(centerY - offsetBottom, layout.mStickerBottom, DELTA);
+        }
+    }
+
+    private static void assertEye(FaceState face, PreviewTransform transform, FaceLayout layout,
+                                  int type, boolean hasEye) {
+        assertEquals(face.mLandmarkFound[type], hasEye);
+        if (hasEye) {
+            assertEquals(transform.translateX(landmarkX(face, type)), layout.mPoints[type * 2],
+                    DELTA);
+            assertEquals(transform.translateY(landmarkY(face, type)),
+                    layout.mPoints[type * 2 + 1], DELTA);
+        }
+    }
+
+    private static float landmarkX(FaceState face, int type) {
+        return face.mLandmarks[type * 2];
+    }
+
+    private static float landmarkY(FaceState face, int type) {
+        return face.mLandmarks[type * 2 + 1];
+    }
+}
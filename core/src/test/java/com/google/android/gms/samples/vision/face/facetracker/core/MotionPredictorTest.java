@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MotionPredictorTest {
+    private static final long FRAME_MILLIS = 33;
+    // 1秒あたり 300 ピクセルで右へ動く顔
+    private static final float SPEED = 300.0f;
+
+    private final float[] mOut = new float[MotionPredictor.DIMENSION_COUNT];
+
+    @Test
+    public void predictsNothingBeforeTheFirstDetection() {
+        MotionPredictor predictor = new MotionPredictor();
+        assertFalse(predictor.predict(0, mOut));
+        assertFalse(predictor.isExtrapolating(0));
+    }
+
+    @Test
+    public void predictsNothingWhenDisabled() {
+        MotionPredictor predictor = new MotionPredictor();
+        predictor.setConfig(new MotionPredictor.Config(false, 500.0f, 4.0f, 100));
+        predictor.update(100, 100, 80, 100, 0);
+        assertFalse(predictor.predict(10, mOut));
+        assertFalse(predictor.isExtrapolating(10));
+    }
+
+    @Test
+    public void holdsTheFirstDetectionUntilMotionIsSeen() {
+        MotionPredictor predictor = new MotionPredictor();
+        predictor.update(100, 120, 80, 100, 0);
+        assertTrue(predictor.predict(50, mOut));
+        assertEquals(100.0f, mOut[MotionPredictor.CENTER_X], 0.0f);
+        assertEquals(120.0f, mOut[MotionPredictor.CENTER_Y], 0.0f);
+        assertEquals(80.0f, mOut[MotionPredictor.WIDTH], 0.0f);
+        assertEquals(100.0f, mOut[MotionPredictor.HEIGHT], 0.0f);
+    }
+
+    @Test
+    public void extrapolatesSteadyMotion() {
+        MotionPredictor predictor = trackSteadyMotion(60);
+        long last = predictor.getLastUpdateMillis();
+        float lastX = xAt(last);
+
+        assertTrue(predictor.predict(last + 50, mOut));
+        // 50 ms で 15 ピクセル進む
+        assertEquals(lastX + SPEED * 0.05f, mOut[MotionPredictor.CENTER_X], 1.0f);
+        assertEquals(200.0f, mOut[MotionPredictor.CENTER_Y], 0.5f);
+        assertTrue(predictor.getLastInnovation() < 1.0f);
+    }
+
+    @Test
+    public void holdsThePredictionAtTheExtrapolationLimit() {
+        MotionPredictor predictor = trackSteadyMotion(60);
+        long last = predictor.getLastUpdateMillis();
+        long limit = MotionPredictor.Config.DEFAULT.mMaxExtrapolationMillis;
+
+        predictor.predict(last + limit, mOut);
+        float atLimit = mOut[MotionPredictor.CENTER_X];
+        assertTrue(atLimit > xAt(last));
+
+        // 上限を過ぎても、最後の検出位置に戻らず上限の位置にとどまる
+        predictor.predict(last + limit + 1, mOut);
+        assertEquals(atLimit, mOut[MotionPredictor.CENTER_X], 0.0f);
+        predictor.predict(last + limit * 10, mOut);
+        assertEquals(atLimit, mOut[MotionPredictor.CENTER_X], 0.0f);
+
+        assertTrue(predictor.isExtrapolating(last + limit - 1));
+        assertFalse(predictor.isExtrapolating(last + limit));
+    }
+
+    @Test
+    public void doesNotExtrapolateBackwardsInTime() {
+        MotionPredictor predictor = trackSteadyMotion(60);
+        long last = predictor.getLastUpdateMillis();
+        predictor.predict(last, mOut);
+        float atLast = mOut[MotionPredictor.CENTER_X];
+        predictor.predict(last - 20, mOut);
+        assertEquals(atLast, mOut[MotionPredictor.CENTER_X], 0.0f);
+        assertFalse(predictor.isExtrapolating(last - 20));
+    }
+
+    @Test
+    public void resetForgetsTheMotion() {
+        MotionPredictor predictor = trackSteadyMotion(60);
+        predictor.reset();
+        assertFalse(predictor.predict(0, mOut));
+
+        predictor.update(10, 20, 30, 40, 5000);
+        predictor.predict(5050, mOut);
+        assertEquals(10.0f, mOut[MotionPredictor.CENTER_X], 0.0f);
+        assertEquals(0.0f, predictor.getLastInnovation(), 0.0f);
+    }
+
+    private static float xAt(long timestampMillis) {
+        return 100.0f + SPEED * timestampMillis / 1000.0f;
+    }
+
+    private static MotionPredictor trackSteadyMotion(int frameCount) {
+        MotionPredictor predictor = new MotionPredictor();
+        for (int i = 0; i < frameCount; i++) {
+            long timestamp = i * FRAME_MILLIS;
+            predictor.update(xAt(timestamp), 200.0f, 80.0f, 100.0f, timestamp);
+        }
+        return predictor;
+    }
+}
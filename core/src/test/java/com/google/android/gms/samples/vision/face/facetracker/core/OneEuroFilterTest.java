@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OneEuroFilterTest {
+    private static final float DT = 1.0f / 30.0f;
+
+    @Test
+    public void passesTheFirstSampleThrough() {
+        OneEuroFilter filter = new OneEuroFilter(2, 1.0f, 0.0f, 1.0f);
+        assertEquals(42.0f, filter.filter(0, 42.0f, DT), 0.0f);
+        assertEquals(-7.0f, filter.filter(1, -7.0f, DT), 0.0f);
+    }
+
+    @Test
+    public void matchesTheLowPassFormulaWithoutSpeedAdaptation() {
+        float minCutoff = 1.0f;
+        OneEuroFilter filter = new OneEuroFilter(1, minCutoff, 0.0f, 1.0f);
+        filter.filter(0, 0.0f, DT);
+
+        float tau = 1.0f / (2.0f * (float) Math.PI * minCutoff);
+        float alpha = 1.0f / (1.0f + tau / DT);
+        assertEquals(alpha * 10.0f, filter.filter(0, 10.0f, DT), 1e-5f);
+    }
+
+    @Test
+    public void smoothesJitterOfAStillSignal() {
+        OneEuroFilter filter = new OneEuroFilter(1, 1.0f, 0.007f, 1.0f);
+        float maxDeviation = 0.0f;
+        for (int i = 0; i < 300; i++) {
+            float noisy = 100.0f + ((i % 2 == 0) ? 2.0f : -2.0f);
+            float filtered = filter.filter(0, noisy, DT);
+            if (i > 30) {
+                maxDeviation = Math.max(maxDeviation, Math.abs(filtered - 100.0f));
+            }
+        }
+        assertTrue("deviation " + maxDeviation, maxDeviation < 1.0f);
+    }
+
+    @Test
+    public void lagsLessBehindFastMotionWithAHigherBeta() {
+        OneEuroFilter still = new OneEuroFilter(1, 1.0f, 0.0f, 1.0f);
+        OneEuroFilter adaptive = new OneEuroFilter(1, 1.0f, 0.05f, 1.0f);
+        float value = 0.0f;
+        float stillOutput = 0.0f;
+        float adaptiveOutput = 0.0f;
+        for (int i = 0; i < 30; i++) {
+            // 1秒あたり 600 ピクセルで動く
+            value = i * 20.0f;
+            stillOutput = still.filter(0, value, DT);
+            adaptiveOutput = adaptive.filter(0, value, DT);
+        }
+        assertTrue(value - adaptiveOutput < (value - stillOutput) / 2);
+    }
+
+    @Test
+    public void keepsTheLastValueForANonPositiveInterval() {
+        OneEuroFilter filter = new OneEuroFilter(1, 1.0f, 0.0f, 1.0f);
+        filter.filter(0, 0.0f, DT);
+        float filtered = filter.filter(0, 10.0f, DT);
+        assertEquals(filtered, filter.filter(0, 50.0f, 0.0f), 0.0f);
+    }
+
+    @Test
+    public void resetPassesTheNextSampleThroughAndKeepsOtherChannels() {
+        OneEuroFilter filter = new OneEuroFilter(2, 1.0f, 0.0f, 1.0f);
+        filter.filter(0, 0.0f, DT);
+        filter.filter(1, 0.0f, DT);
+
+        filter.reset(0);
+        assertEquals(50.0f, filter.filter(0, 50.0f, DT), 0.0f);
+        assertTrue(filter.filter(1, 50.0f, DT) < 50.0f);
+
+        filter.reset();
+        assertEquals(80.0f, filter.filter(1, 80.0f, DT), 0.0f);
+    }
+}
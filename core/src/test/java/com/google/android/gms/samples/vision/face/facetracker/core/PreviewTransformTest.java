@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PreviewTransformTest {
+    private static final float DELTA = 1e-4f;
+
+    @Test
+    public void scalesThePreviewOverTheView() {
+        PreviewTransform transform = PreviewTransform.create(640, 480, 1280, 1440, false);
+        assertEquals(2.0f, transform.scaleX(1.0f), DELTA);
+        assertEquals(3.0f, transform.scaleY(1.0f), DELTA);
+        assertEquals(200.0f, transform.translateX(100.0f), DELTA);
+        assertEquals(150.0f, transform.translateY(50.0f), DELTA);
+    }
+
+    @Test
+    public void mirrorsHorizontallyForTheFrontCamera() {
+        PreviewTransform transform = PreviewTransform.create(640, 480, 1280, 1440, true);
+        // 左端はビューの右端に、右端は左端に写る
+        assertEquals(1280.0f, transform.translateX(0.0f), DELTA);
+        assertEquals(0.0f, transform.translateX(640.0f), DELTA);
+        assertEquals(1080.0f, transform.translateX(100.0f), DELTA);
+        // 縦方向と大きさは反転しない
+        assertEquals(150.0f, transform.translateY(50.0f), DELTA);
+        assertEquals(2.0f, transform.scaleX(1.0f), DELTA);
+    }
+
+    @Test
+    public void doesNotScaleWhileASizeIsUnknown() {
+        PreviewTransform transform = PreviewTransform.create(0, 0, 1280, 1440, false);
+        assertEquals(100.0f, transform.translateX(100.0f), DELTA);
+        assertEquals(50.0f, transform.translateY(50.0f), DELTA);
+
+        transform = PreviewTransform.create(640, 480, 0, 0, false);
+        assertEquals(1.0f, transform.scaleX(1.0f), DELTA);
+        assertEquals(1.0f, transform.scaleY(1.0f), DELTA);
+    }
+
+    @Test
+    public void identityLeavesPointsUnchanged() {
+        assertEquals(12.5f, PreviewTransform.IDENTITY.translateX(12.5f), 0.0f);
+        assertEquals(7.25f, PreviewTransform.IDENTITY.translateY(7.25f), 0.0f);
+    }
+
+    @Test
+    public void mapPointsMatchesTranslatingOnePointAtATime() {
+        for (boolean mirrored : new boolean[]{false, true}) {
+            PreviewTransform transform = PreviewTransform.create(640, 480, 1080, 1920, mirrored);
+            float[] src = {0.0f, 0.0f, 13.0f, 27.0f, 639.0f, 479.0f, 320.5f, 240.25f};
+            float[] dst = new float[src.length + 2];
+            transform.mapPoints(src, 2, dst, 2, 3);
+            for (int i = 2; i < src.length; i += 2) {
+                assertEquals(transform.translateX(src[i]), dst[i], 0.0f);
+                assertEquals(transform.translateY(src[i + 1]), dst[i + 1], 0.0f);
+            }
+            // オフセットより前は書き換えない
+            assertEquals(0.0f, dst[0], 0.0f);
+            assertEquals(0.0f, dst[1], 0.0f);
+        }
+    }
+
+    @Test
+    public void mapPointsWorksInPlace() {
+        PreviewTransform transform = PreviewTransform.create(640, 480, 1080, 1920, true);
+        float[] points = {13.0f, 27.0f, 300.0f, 400.0f};
+        float[] expected = new float[points.length];
+        transform.mapPoints(points, 0, expected, 0, 2);
+        transform.mapPoints(points, 0, points, 0, 2);
+        for (int i = 0; i < points.length; i++) {
+            assertEquals(expected[i], points[i], 0.0f);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays the same recorded detections the way {@code FaceOverlayProcessor} tracks them, i.e.,
+ * predictors updated by the frame timestamps and a {@link FrameClock} for the draw time, at
+ * different replay speeds, and checks that the tracked state does not depend on the speed.
+ */
+public class ReplayDeterminismTest {
+    private static final int FRAME_COUNT = 120;
+    private static final int STATE_SIZE = MotionPredictor.DIMENSION_COUNT * 4;
+
+    private final long[] mTimestamps = new long[FRAME_COUNT];
+    private final FaceState[] mFaces = new FaceState[FRAME_COUNT];
+
+    public ReplayDeterminismTest() {
+        // 約 30 fps で、間隔が揺らぎながら右下へ動く顔の記録
+        Random random = new Random(7);
+        long timestamp = 1000;
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            timestamp += 28 + random.nextInt(12);
+            mTimestamps[i] = timestamp;
+            FaceState face = new FaceState();
+            face.set(100 + i * 3 + random.nextFloat(), 80 + i + random.nextFloat(),
+                    120 + random.nextFloat(), 140 + random.nextFloat(), 0.5f);
+            mFaces[i] = face;
+        }
+    }
+
+    @Test
+    public void replayingTheSameLogTwiceGivesTheSameState() {
+        float[] first = new float[STATE_SIZE];
+        float[] second = new float[STATE_SIZE];
+        replay(new FrameClock(), 5000, 0, false, first);
+        replay(new FrameClock(), 90000, 0, false, second);
+        assertArrayEquals(first, second, 0.0f);
+    }
+
+    @Test
+    public void replayAsFastAsPossibleTracksLikeRealTime() {
+        float[] realTime = new float[STATE_SIZE];
+        float[] asap = new float[STATE_SIZE];
+        // リアルタイムでは記録どおりの間隔で、最速の再生では 1 ms 未満の間隔で届く
+        replay(new FrameClock(), 5000, -1, false, realTime);
+        replay(new FrameClock(), 5000, 0, false, asap);
+        assertArrayEquals(realTime, asap, 0.0f);
+        // 速度が推定されている
+        assertTrue(asap[MotionPredictor.CENTER_X * 4 + 1] > 50.0f);
+    }
+
+    @Test
+    public void stampingByArrivalTimeDependsOnTheReplaySpeed() {
+        float[] realTime = new float[STATE_SIZE];
+        float[] asap = new float[STATE_SIZE];
+        replay(new FrameClock(), 5000, -1, true, realTime);
+        replay(new FrameClock(), 5000, 0, true, asap);
+        // 届いた時刻で更新すると、間隔が 0 になり速度が推定されない
+        assertEquals(0.0f, asap[MotionPredictor.CENTER_X * 4 + 1], 0.0f);
+        assertTrue(realTime[MotionPredictor.CENTER_X * 4 + 1] > 50.0f);
+    }
+
+    @Test
+    public void drawTimeDoesNotFallBehindAFastReplay() {
+        FrameClock clock = new FrameClock();
+        long uptime = replay(clock, 5000, 0, false, new float[STATE_SIZE]);
+        assertEquals(mTimestamps[FRAME_COUNT - 1], uptime + clock.getOffsetMillis());
+    }
+
+    @Test
+    public void drawTimeFollowsTheUptimeInRealTime() {
+        FrameClock clock = new FrameClock();
+        long uptime = replay(clock, 5000, -1, false, new float[STATE_SIZE]);
+        // 最初のフレームで決まった差のまま進む
+        assertEquals(mTimestamps[0] - 5000, clock.getOffsetMillis());
+        assertEquals(mTimestamps[FRAME_COUNT - 1], uptime + clock.getOffsetMillis());
+    }
+
+    @Test
+    public void resetStartsANewSession() {
+        FrameClock clock = new FrameClock();
+        clock.onFrame(10000, 500);
+        clock.reset();
+        clock.onFrame(200, 600);
+        assertEquals(-400, clock.getOffsetMillis());
+    }
+
+    /**
+     * Tracks the recorded face, with each frame arriving {@code arrivalIntervalMillis} after the
+     * previous one, or at the recorded intervals if negative.
+     *
+     * @param stampWithUptime true to update the predictor by the arrival time instead of the
+     *                        frame timestamp, as it was before tracking by frame timestamps
+     * @return uptime at which the last frame arrived
+     */
+    private long replay(FrameClock clock, long startUptimeMillis, long arrivalIntervalMillis,
+                        boolean stampWithUptime, float[] state) {
+        TrackedFace track = new TrackedFace();
+        long uptime = startUptimeMillis;
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            if (i > 0) {
+                uptime += (arrivalIntervalMillis < 0)
+                        ? mTimestamps[i] - mTimestamps[i - 1] : arrivalIntervalMillis;
+            }
+            clock.onFrame(mTimestamps[i], uptime);
+            track.update(mFaces[i], stampWithUptime ? uptime : mTimestamps[i],
+                    MotionPredictor.Config.DEFAULT);
+        }
+        track.getPredictorState(state);
+        return uptime;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives {@link ThrottlingGovernor} with scripted conditions, a fake clock and a manual
+ * scheduler.
+ */
+public class ThrottlingGovernorTest {
+    private static final long POLL_INTERVAL_MILLIS = 1000;
+
+    private final FakeConditions mConditions = new FakeConditions();
+    private final FakeClock mClock = new FakeClock();
+    private final ManualScheduler mScheduler = new ManualScheduler();
+    private final List<ThrottlingGovernor.Transition> mNotified = new ArrayList<>();
+    private ThrottlingGovernor mGovernor;
+
+    @Before
+    public void setUp() {
+        mGovernor = new ThrottlingGovernor(mConditions, mClock, mScheduler,
+                new ThrottlingGovernor.Listener() {
+                    @Override
+                    public void onTierChanged(ThrottlingGovernor.Transition transition) {
+                        mNotified.add(transition);
+                    }
+                }, POLL_INTERVAL_MILLIS);
+    }
+
+    @Test
+    public void entersTiersAtTheirTemperatures() {
+        assertTierAt(39.9f, ThrottlingGovernor.NORMAL);
+        assertTierAt(40.0f, ThrottlingGovernor.WARM);
+        assertTierAt(43.0f, ThrottlingGovernor.HOT);
+        assertTierAt(46.0f, ThrottlingGovernor.CRITICAL);
+    }
+
+    @Test
+    public void jumpsStraightToTheTierForTheTemperature() {
+        assertTierAt(47.0f, ThrottlingGovernor.CRITICAL);
+        assertEquals(1, mNotified.size());
+        assertSame(ThrottlingGovernor.NORMAL, mNotified.get(0).mFrom);
+    }
+
+    @Test
+    public void leavesATierOnlyBelowTheHysteresisMargin() {
+        assertTierAt(43.5f, ThrottlingGovernor.HOT);
+        // 43℃ を下回っても、41℃ を下回るまでは hot のまま
+        assertTierAt(42.0f, ThrottlingGovernor.HOT);
+        assertTierAt(41.0f, ThrottlingGovernor.HOT);
+        assertTierAt(40.9f, ThrottlingGovernor.WARM);
+        assertTierAt(38.0f, ThrottlingGovernor.WARM);
+        assertTierAt(37.9f, ThrottlingGovernor.NORMAL);
+        assertEquals(3, mNotified.size());
+    }
+
+    @Test
+    public void unknownTemperatureResetsTheThermalTier() {
+        assertTierAt(44.0f, ThrottlingGovernor.HOT);
+        assertTierAt(Float.NaN, ThrottlingGovernor.NORMAL);
+    }
+
+    @Test
+    public void lowBatteryOverridesACoolDevice() {
+        mConditions.mTemperature = 30.0f;
+        mConditions.mBatteryLevel = 0.15f;
+        mGovernor.evaluate();
+        assertSame(ThrottlingGovernor.WARM, mGovernor.getTier());
+
+        mConditions.mBatteryLevel = 0.05f;
+        mGovernor.evaluate();
+        assertSame(ThrottlingGovernor.HOT, mGovernor.getTier());
+
+        // 充電中はバッテリー残量を考慮しない
+        mConditions.mCharging = true;
+        mGovernor.evaluate();
+        assertSame(ThrottlingGovernor.NORMAL, mGovernor.getTier());
+    }
+
+    @Test
+    public void takesTheStricterOfTheThermalAndBatteryTiers() {
+        mConditions.mBatteryLevel = 0.10f;
+        assertTierAt(44.0f, ThrottlingGovernor.HOT);
+        assertTierAt(30.0f, ThrottlingGovernor.WARM);
+    }
+
+    @Test
+    public void unknownBatteryLevelIsIgnored() {
+        mConditions.mTemperature = 30.0f;
+        mConditions.mBatteryLevel = -1.0f;
+        mGovernor.evaluate();
+        assertSame(ThrottlingGovernor.NORMAL, mGovernor.getTier());
+        assertTrue(mNotified.isEmpty());
+    }
+
+    @Test
+    public void recordsEachTransitionWithItsConditionsAndTimes() {
+        mClock.mElapsedMillis = 5000;
+        mClock.mCurrentMillis = 1000000;
+        assertTierAt(41.0f, ThrottlingGovernor.WARM);
+
+        mClock.mElapsedMillis = 12000;
+        mClock.mCurrentMillis = 1007000;
+        mConditions.mBatteryLevel = 0.5f;
+        assertTierAt(44.0f, ThrottlingGovernor.HOT);
+
+        List<ThrottlingGovernor.Transition> transitions = mGovernor.getTransitions();
+        assertEquals(mNotified, transitions);
+        assertEquals(2, transitions.size());
+
+        ThrottlingGovernor.Transition first = transitions.get(0);
+        assertSame(ThrottlingGovernor.NORMAL, first.mFrom);
+        assertSame(ThrottlingGovernor.WARM, first.mTo);
+        assertEquals(1000000, first.mTimeMillis);
+        assertEquals(5000, first.mMillisInPreviousTier);
+        assertEquals(41.0f, first.mTemperatureCelsius, 0.0f);
+
+        ThrottlingGovernor.Transition second = transitions.get(1);
+        assertSame(ThrottlingGovernor.WARM, second.mFrom);
+        assertSame(ThrottlingGovernor.HOT, second.mTo);
+        assertEquals(1007000, second.mTimeMillis);
+        assertEquals(7000, second.mMillisInPreviousTier);
+        assertEquals(0.5f, second.mBatteryLevel, 0.0f);
+    }
+
+    @Test
+    public void keepsOnlyTheMostRecentTransitions() {
+        for (int i = 0; i < ThrottlingGovernor.MAX_TRANSITIONS + 5; i++) {
+            mConditions.mTemperature = (i % 2 == 0) ? 41.0f : 30.0f;
+            mGovernor.evaluate();
+        }
+        List<ThrottlingGovernor.Transition> transitions = mGovernor.getTransitions();
+        assertEquals(ThrottlingGovernor.MAX_TRANSITIONS, transitions.size());
+        assertSame(mNotified.get(mNotified.size() - 1), transitions.get(transitions.size() - 1));
+    }
+
+    @Test
+    public void pollsRightAwayAndThenPeriodicallyUntilStopped() {
+        mConditions.mTemperature = 41.0f;
+        mGovernor.start();
+        assertEquals(0, mScheduler.mDelayMillis);
+        mScheduler.runPending();
+        assertSame(ThrottlingGovernor.WARM, mGovernor.getTier());
+        assertEquals(POLL_INTERVAL_MILLIS, mScheduler.mDelayMillis);
+
+        mConditions.mTemperature = 44.0f;
+        mScheduler.runPending();
+        assertSame(ThrottlingGovernor.HOT, mGovernor.getTier());
+
+        mGovernor.stop();
+        assertNull(mScheduler.mPending);
+    }
+
+    private void assertTierAt(float temperature, ThrottlingGovernor.Tier expected) {
+        mConditions.mTemperature = temperature;
+        mGovernor.evaluate();
+        assertSame("at " + temperature, expected, mGovernor.getTier());
+    }
+
+    private static final class FakeConditions implements DeviceConditions {
+        float mTemperature = Float.NaN;
+        float mBatteryLevel = 1.0f;
+        boolean mCharging;
+
+        @Override
+        public float getTemperatureCelsius() {
+            return mTemperature;
+        }
+
+        @Override
+        public float getBatteryLevel() {
+            return mBatteryLevel;
+        }
+
+        @Override
+        public boolean isCharging() {
+            return mCharging;
+        }
+    }
+
+    private static final class FakeClock implements ThrottlingGovernor.Clock {
+        long mElapsedMillis;
+        long mCurrentMillis;
+
+        @Override
+        public long elapsedRealtimeMillis() {
+            return mElapsedMillis;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return mCurrentMillis;
+        }
+    }
+
+    /**
+     * Holds the one pending task, which the test runs explicitly.
+     */
+    private static final class ManualScheduler implements ThrottlingGovernor.Scheduler {
+        Runnable mPending;
+        long mDelayMillis = -1;
+
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            mPending = task;
+            mDelayMillis = delayMillis;
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            if (mPending == task) {
+                mPending = null;
+                mDelayMillis = -1;
+            }
+        }
+
+        void runPending() {
+            Runnable task = mPending;
+            mPending = null;
+            task.run();
+        }
+    }
+}